@@ -25,6 +25,9 @@ public class GomokuGame {
         String whiteStrategy = getText(bottomPanel.getSecondPlay());
         IChessboardAlgo chessboardAlgo = PlayStrategyDecider.decideChessboardAlgo(blackStrategy, whiteStrategy);
         chessboard.setChessBoardAlgo(chessboardAlgo);
+        for (Player p : Player.values()) {
+            if (p.getPlayStrategy() != null) p.getPlayStrategy().stop();
+        }
         Player.BLACK.setPlayStrategy(PlayStrategyDecider.buildPlayStrategy(blackStrategy, chessboardAlgo, Player.WHITE.getId(), bottomPanel));
         Player.WHITE.setPlayStrategy(PlayStrategyDecider.buildPlayStrategy(whiteStrategy, chessboardAlgo, Player.BLACK.getId(), bottomPanel));
         chessboard.reset();
@@ -2,6 +2,7 @@ package aialgo;
 
 import chessboardalgo.IChessboardAIAlgo;
 import common.Position;
+import common.SearchBudget;
 import scorecalculator.IScoreManager;
 
 public interface IAIAlgo {
@@ -15,4 +16,8 @@ public interface IAIAlgo {
     IScoreManager getScoreManager();
 
     int getHumanColor();
+
+    // 嵌套在别的搜索里时传入父预算，搜索不会超过父搜索的截止时间，父预算取消时也会停下
+    default void setParentBudget(SearchBudget parentBudget) {
+    }
 }
@@ -0,0 +1,90 @@
+package aialgo;
+
+import aialgo.vcx.NegamaxVCXEnhancedContext;
+import chessboardalgo.IChessboardAIAlgo;
+import common.ThreadPoolContext;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lazy SMP: 主线程正常搜索，helper 线程在各自克隆的棋盘上搜同一个根节点，
+// 搜索深度和根节点走法顺序略有不同，所有线程共用一张无锁置换表，主线程结束时停止 helper 并返回主线程的结果
+public class LazySMPMinMaxAIAlgo extends ThreadSafeMinMaxAIAlgo {
+    @Getter
+    @Setter
+    private int threads;
+    private final NegamaxVCXEnhancedContext context;
+    private final List<MinMaxAIAlgo> helpers = new ArrayList<>();
+    private CountDownLatch helperLatch = new CountDownLatch(0);
+    private final AtomicLong helperNodeCount = new AtomicLong();
+
+    public LazySMPMinMaxAIAlgo(IChessboardAIAlgo chessBoardAlgo, int enemyColor, int threads) {
+        this(chessBoardAlgo, enemyColor, 9, NegamaxVCXEnhancedContext.DISABLE, threads);
+    }
+
+    public LazySMPMinMaxAIAlgo(IChessboardAIAlgo chessBoardAlgo, int enemyColor, int depth,
+                               NegamaxVCXEnhancedContext context, int threads) {
+        super(chessBoardAlgo, enemyColor, depth, context);
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive, got " + threads);
+        this.threads = threads;
+        this.context = context;
+    }
+
+    // helper 的启动和停止都在 ThreadSafeMinMaxAIAlgo 的信号量里，和上一次被中断、还没退出的搜索不会交错；
+    // 启动时 zobrist.newSearch() 已经执行过
+    @Override
+    protected void prepareSearch(int maxDepth) {
+        super.prepareSearch(maxDepth);
+        startHelpers(maxDepth);
+    }
+
+    @Override
+    protected void finishSearch() {
+        stopHelpers();
+    }
+
+    // maxDepth 是这次搜索实际的深度上限，开局时比 firstDepth 小
+    private void startHelpers(int maxDepth) {
+        helpers.clear();
+        helperNodeCount.set(0);
+        helperLatch = new CountDownLatch(threads - 1);
+        for (int i = 1; i < threads; i++) {
+            // 奇数号 helper 多搜两层，给主线程填更深的置换表条目
+            IChessboardAIAlgo board = getChessboardAlgo().clone();
+            MinMaxAIAlgo helper = new MinMaxAIAlgo(board, humanColor,
+                    maxDepth + ((i & 1) == 1 ? 2 : 0), context, zobrist.fork(board));
+            helper.setIterativeDeepening(true);
+            helper.setPrincipalVariationSearch(principalVariationSearch);
+            helper.setRootRotation(i);
+            helper.setParentBudget(parentBudget);
+            helpers.add(helper);
+            ThreadPoolContext.threadPool.submit(() -> {
+                try {
+                    helper.aiFindPos();
+                } finally {
+                    helperNodeCount.addAndGet(helper.getNodeCount());
+                    helperLatch.countDown();
+                }
+            });
+        }
+    }
+
+    // 还在线程池队列里的 helper 开始执行时也会立刻返回
+    private void stopHelpers() {
+        for (MinMaxAIAlgo helper : helpers) helper.stop();
+    }
+
+    // 等待上一次搜索的 helper 全部退出，主要给基准测试统计节点数用
+    public boolean awaitHelpers(long timeoutMs) throws InterruptedException {
+        return helperLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public long getTotalNodeCount() {
+        return getNodeCount() + helperNodeCount.get();
+    }
+}
@@ -3,15 +3,18 @@ package aialgo;
 import chessboardalgo.IChessboardAIAlgo;
 import common.DebugContext;
 import common.Position;
+import common.SearchBudget;
+import lombok.Getter;
+import lombok.Setter;
 import scorecalculator.CachedScoreManager;
 import scorecalculator.IScoreManager;
 import scorecalculator.Score;
 import aialgo.vcx.NegamaxVCXEnhancedContext;
 import aialgo.vcx.VCX;
+import zobrist.TranspositionTable;
 import zobrist.Zobrist;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.Arrays;
 
 import static zobrist.Zobrist.DISABLE_CACHE_MASK;
 
@@ -22,10 +25,66 @@ public class MinMaxAIAlgo extends RecursiveBaseAIAlgo {
     protected int nextPoint = -1;
     protected Zobrist zobrist;
     protected DebugContext debugContext = DebugContext.ENABLE;
+    // 每层一份候选点 buffer，避免搜索中反复分配
+    protected int[][] candidateBuffers;
+    // 每步的时间预算，> 0 时按 1, 3, 5 ... 迭代加深直到超时，取最后一轮完整搜索的结果
+    @Setter
+    protected long timeLimitMs = 0;
+    // 不限时也按迭代加深搜索，靠上一轮的置换表排序
+    @Setter
+    protected boolean iterativeDeepening = false;
+    // 杀手着法 killers[ply][2] 和历史表 history[idx][color - 1]，只在同一优先级分桶内部调整顺序
+    @Setter
+    protected boolean moveOrdering = true;
+    protected int[][] killers;
+    protected int[][] history;
+    protected int[][] bucketBuffers;
+    private int[] orderKeys;
+    @Getter
+    protected long nodeCount = 0;
+    // PVS: 第一个子节点全窗口，其余零窗口试探，fail high 才全窗口重搜
+    @Setter
+    protected boolean principalVariationSearch = false;
+    // 并行搜索时由其他线程通知停止
+    private volatile boolean stopRequested = false;
+    // 根节点把第 rootRotation 个候选点提到最前，让并行的各个搜索走不同的路线
+    @Setter
+    protected int rootRotation = 0;
+    protected long deadline = 0;
+    // 每次 aiFindPos 在 parentBudget 下开子预算，嵌套的 VCX 再在它下面开，都不会超过父搜索的截止时间
+    @Setter
+    protected SearchBudget parentBudget = null;
+    @Setter
+    protected long nodeLimit = SearchBudget.NO_LIMIT;
+    protected SearchBudget budget = SearchBudget.unlimited();
+    protected boolean aborted = false;
+    private int abortCheckCounter = 0;
 
     public MinMaxAIAlgo(IChessboardAIAlgo chessBoardAlgo, int enemyColor, int depth, NegamaxVCXEnhancedContext context) {
+        this(chessBoardAlgo, enemyColor, depth, context, Zobrist.create(chessBoardAlgo));
+    }
+
+    // 单独的置换表按 tableSizeMB 分配
+    public MinMaxAIAlgo(IChessboardAIAlgo chessBoardAlgo, int enemyColor, int depth, NegamaxVCXEnhancedContext context,
+                        int tableSizeMB) {
+        this(chessBoardAlgo, enemyColor, depth, context, Zobrist.create(chessBoardAlgo, tableSizeMB));
+    }
+
+    // shareTableWith 不为空时和它共用置换表，不再单独分配
+    public MinMaxAIAlgo(IChessboardAIAlgo chessBoardAlgo, int enemyColor, int depth, NegamaxVCXEnhancedContext context,
+                        MinMaxAIAlgo shareTableWith) {
+        this(chessBoardAlgo, enemyColor, depth, context, sharedZobrist(chessBoardAlgo, shareTableWith));
+    }
+
+    static Zobrist sharedZobrist(IChessboardAIAlgo chessBoardAlgo, MinMaxAIAlgo shareTableWith) {
+        return shareTableWith == null ? Zobrist.create(chessBoardAlgo) : shareTableWith.zobrist.share(chessBoardAlgo);
+    }
+
+    // 并行搜索的工作线程直接用 fork 出来的 Zobrist，不再单独分配置换表
+    protected MinMaxAIAlgo(IChessboardAIAlgo chessBoardAlgo, int enemyColor, int depth, NegamaxVCXEnhancedContext context,
+                           Zobrist zobrist) {
         super(chessBoardAlgo, new CachedScoreManager(chessBoardAlgo), enemyColor);
-        zobrist = new Zobrist(chessBoardAlgo);
+        this.zobrist = zobrist;
         firstDepth = depth;
         VCXContext = context;
     }
@@ -43,50 +102,195 @@ public class MinMaxAIAlgo extends RecursiveBaseAIAlgo {
     }
 
     protected int negamax(boolean isAI, int depth, int alpha, int beta, int idx) {
-        Optional<Integer> cached = zobrist.tryGet(depth);
-        if (depth != firstDepth && !cached.isEmpty()) {
-            return cached.get();
+        nodeCount++;
+        int origAlpha = alpha, ttMove = -1;
+        long cached = zobrist.probe();
+        if (cached != TranspositionTable.MISS) {
+            ttMove = TranspositionTable.move(cached);
+            if (depth != firstDepth && TranspositionTable.depth(cached) >= depth) {
+                int score = TranspositionTable.score(cached);
+                int bound = TranspositionTable.bound(cached);
+                if (bound == TranspositionTable.EXACT) return score;
+                if (bound == TranspositionTable.LOWER) alpha = Math.max(alpha, score);
+                else beta = Math.min(beta, score);
+                if (alpha >= beta) return score;
+            }
         }
 
         if ((idx != -1 && chessboardAlgo.isTerminal(getX(idx), getY(idx))) || depth == 0) {
             return zobrist.setAndReturnScore(scoreManager.evaluation(isAI, humanColor), depth);
         }
-        if (Thread.currentThread().isInterrupted()) return isAI ? -DISABLE_CACHE_MASK : DISABLE_CACHE_MASK;
+        if (isAborted()) return isAI ? -DISABLE_CACHE_MASK : DISABLE_CACHE_MASK;
 
-        List<Integer> blankList = generateCandidatePiece(isAI);
+        int[] blankList = candidateBuffer(depth);
+        int blankCnt = generateOrderedCandidates(isAI, depth, ttMove, blankList);
 
         if (chessboardAlgo.steps() > VCXContext.startSteps && depth == firstDepth - VCXContext.applyDeltaDepth) {
-            VCX vcx = new VCX(chessboardAlgo.clone(), isAI ? humanColor : aiColor, VCXContext.vcxDepth);
-            if (vcx.aiFindPos() != Position.EMPTY) {
+            if (VCX.findWin(chessboardAlgo.clone(), isAI ? humanColor : aiColor, VCXContext.vcxDepth, budget) != Position.EMPTY) {
                 return zobrist.setAndReturnScore(Score.FIVE.value, depth);
             }
         }
         debugContext.debugStartInfo(depth, firstDepth);
 
-        int resVal = Integer.MIN_VALUE;
-        for (int nextStep : blankList) {
-            if (Thread.currentThread().isInterrupted()) return isAI ? -DISABLE_CACHE_MASK : DISABLE_CACHE_MASK;
+        int resVal = Integer.MIN_VALUE, bestMove = -1, searched = 0;
+        for (int i = 0; i < blankCnt; i++) {
+            int nextStep = blankList[i];
+            if (isAborted()) return isAI ? -DISABLE_CACHE_MASK : DISABLE_CACHE_MASK;
 
             if (!debugContext.isInDebugStep(depth, firstDepth, nextStep)) continue;
             int y = getY(nextStep), x = getX(nextStep);
             addPiece(y, x, isAI);
-            int value = -negamax(!isAI, depth - 1, -beta, -alpha, nextStep);
+            int value;
+            if (principalVariationSearch && searched > 0) {
+                value = -negamax(!isAI, depth - 1, -alpha - 1, -alpha, nextStep);
+                if (value > alpha && value < beta)
+                    value = -negamax(!isAI, depth - 1, -beta, -alpha, nextStep);
+            } else {
+                value = -negamax(!isAI, depth - 1, -beta, -alpha, nextStep);
+            }
+            searched++;
             removePiece(y, x, isAI);
 
             debugContext.debugResultInfo(depth, y, x, firstDepth, String.format("value:%s", value));
 
-            resVal = Math.max(resVal, value);
+            if (value > resVal) {
+                resVal = value;
+                bestMove = nextStep;
+            }
             if (value > alpha) {
                 if (depth == firstDepth) {
                     nextPoint = nextStep;
-                    if (resVal >= Score.FIVE.value) return zobrist.setAndReturnScore(resVal, depth);
+                    if (resVal >= Score.FIVE.value) return store(resVal, depth, origAlpha, beta, bestMove);
+                }
+                if (value >= beta) {
+                    if (moveOrdering) recordCutoff(nextStep, firstDepth - depth, isAI ? aiColor : humanColor, depth);
+                    return store(value, depth, origAlpha, beta, bestMove);
                 }
-                if (value >= beta) return value;
                 alpha = value;
             }
         }
 
-        return zobrist.setAndReturnScore(resVal, depth);
+        return store(resVal, depth, origAlpha, beta, bestMove);
+    }
+
+    protected int generateOrderedCandidates(boolean isAI, int depth, int ttMove, int[] blankList) {
+        int blankCnt;
+        if (moveOrdering) {
+            int[] bucketIds = bucketBuffer(depth);
+            blankCnt = scoreManager.generateCandidatePiece(isAI ? aiColor : humanColor, false, 1, 20, blankList, bucketIds);
+            orderByHeuristics(blankList, bucketIds, blankCnt, firstDepth - depth, isAI ? aiColor : humanColor);
+        } else {
+            blankCnt = generateCandidatePiece(isAI, blankList);
+        }
+        moveToFront(blankList, blankCnt, ttMove);
+        if (depth == firstDepth && rootRotation > 0 && blankCnt > 1)
+            moveToFront(blankList, blankCnt, blankList[rootRotation % blankCnt]);
+        return blankCnt;
+    }
+
+    // 搜索根节点，结果写入 nextPoint
+    protected int searchRoot(int depth) {
+        return negamax(true, depth, -99999999, 99999999, -1);
+    }
+
+    // 按搜索窗口记录 bound：不超过原始 alpha 是上界，达到 beta 是下界
+    private int store(int value, int depth, int origAlpha, int beta, int bestMove) {
+        // 被中断时子节点的值不可信，不写入
+        if (aborted) return value;
+        int bound = value <= origAlpha ? TranspositionTable.UPPER
+                : value >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        return zobrist.setAndReturnScore(value, depth, bound, bestMove);
+    }
+
+    protected boolean isAborted() {
+        if (aborted) return true;
+        // 停止标记、中断、预算和截止时间都每隔 CHECK_INTERVAL 个节点检查一次
+        if ((++abortCheckCounter & SearchBudget.CHECK_MASK) == 0 && (stopRequested
+                || Thread.currentThread().isInterrupted() || budget.consume(SearchBudget.CHECK_INTERVAL)
+                || deadline != 0 && System.currentTimeMillis() > deadline))
+            return aborted = true;
+        return false;
+    }
+
+    // 分桶内按 杀手着法 > 历史分 稳定排序
+    private void orderByHeuristics(int[] moves, int[] bucketIds, int cnt, int ply, int color) {
+        int killer0 = killers[ply][0], killer1 = killers[ply][1];
+        for (int i = 0; i < cnt; i++) {
+            int move = moves[i];
+            orderKeys[i] = move == killer0 ? Integer.MAX_VALUE
+                    : move == killer1 ? Integer.MAX_VALUE - 1 : history[move][color - 1];
+        }
+        for (int i = 1; i < cnt; i++) {
+            int move = moves[i], key = orderKeys[i], j = i;
+            while (j > 0 && bucketIds[j - 1] == bucketIds[i] && orderKeys[j - 1] < key) {
+                moves[j] = moves[j - 1];
+                orderKeys[j] = orderKeys[j - 1];
+                j--;
+            }
+            moves[j] = move;
+            orderKeys[j] = key;
+        }
+    }
+
+    private void recordCutoff(int move, int ply, int color, int depth) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        history[move][color - 1] = Math.min(history[move][color - 1] + depth * depth, Integer.MAX_VALUE - 2);
+    }
+
+    protected void prepareSearch(int maxDepth) {
+        nodeCount = 0;
+        if (killers == null || killers.length <= maxDepth) killers = new int[maxDepth + 1][2];
+        for (int[] killer : killers) Arrays.fill(killer, -1);
+        if (history == null) {
+            history = new int[size * size][2];
+            orderKeys = new int[size * size];
+        }
+        // 历史分随着对局逐步衰减
+        for (int[] h : history) {
+            h[0] >>= 1;
+            h[1] >>= 1;
+        }
+    }
+
+    protected int[] bucketBuffer(int depth) {
+        if (bucketBuffers == null || bucketBuffers.length <= depth) {
+            int[][] buffers = new int[Math.max(depth + 1, firstDepth + 1)][];
+            if (bucketBuffers != null) System.arraycopy(bucketBuffers, 0, buffers, 0, bucketBuffers.length);
+            bucketBuffers = buffers;
+        }
+        if (bucketBuffers[depth] == null) bucketBuffers[depth] = new int[size * size];
+        return bucketBuffers[depth];
+    }
+
+    // 停止后该实例的搜索都会立刻返回
+    public void stop() {
+        stopRequested = true;
+    }
+
+    // 与 other 共用 Zobrist 随机数和置换表
+    public void shareTranspositionTable(MinMaxAIAlgo other) {
+        zobrist = other.zobrist.fork(chessboardAlgo);
+    }
+
+    // 当前局面在置换表里的最佳着法，没有返回 -1
+    // 自己刚落子后调用时就是上一次搜索的主变例里预测的对手应着
+    public int pvMove() {
+        long cached = zobrist.probe();
+        return cached == TranspositionTable.MISS ? -1 : TranspositionTable.move(cached);
+    }
+
+    private static void moveToFront(int[] moves, int cnt, int move) {
+        if (move < 0) return;
+        for (int i = 0; i < cnt; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
+        }
     }
 
     @Override
@@ -103,8 +307,18 @@ public class MinMaxAIAlgo extends RecursiveBaseAIAlgo {
         zobrist.updateHash(y, x, role);
     }
 
-    private List<Integer> generateCandidatePiece(boolean isAI) {
-        return scoreManager.generateCandidatePiece(isAI ? aiColor : humanColor);
+    private int generateCandidatePiece(boolean isAI, int[] buffer) {
+        return scoreManager.generateCandidatePiece(isAI ? aiColor : humanColor, false, 1, 20, buffer);
+    }
+
+    protected int[] candidateBuffer(int depth) {
+        if (candidateBuffers == null || candidateBuffers.length <= depth) {
+            int[][] buffers = new int[Math.max(depth + 1, firstDepth + 1)][];
+            if (candidateBuffers != null) System.arraycopy(candidateBuffers, 0, buffers, 0, candidateBuffers.length);
+            candidateBuffers = buffers;
+        }
+        if (candidateBuffers[depth] == null) candidateBuffers[depth] = new int[size * size];
+        return candidateBuffers[depth];
     }
 
 
@@ -117,9 +331,43 @@ public class MinMaxAIAlgo extends RecursiveBaseAIAlgo {
     @Override
     public Position aiFindPos() {
         int oriDep = firstDepth;
-        firstDepth = chessboardAlgo.steps() < 8 ? Math.min(firstDepth, 7) : firstDepth;
-        int score = negamax(true, firstDepth, -99999999, 99999999, -1);
+        int maxDepth = chessboardAlgo.steps() < 8 ? Math.min(firstDepth, 7) : firstDepth;
+        aborted = false;
+        deadline = 0;
+        budget = SearchBudget.child(parentBudget, SearchBudget.NO_LIMIT, nodeLimit);
+        zobrist.newSearch();
+        prepareSearch(maxDepth);
+        if (timeLimitMs <= 0 && !iterativeDeepening) {
+            firstDepth = maxDepth;
+            int score = searchRoot(firstDepth);
+            firstDepth = oriDep;
+            return new Position(getY(nextPoint), getX(nextPoint), score >= Score.FIVE.value);
+        }
+        long startTime = System.currentTimeMillis();
+        int bestPoint = -1, bestScore = 0;
+        for (int depth = 2 - maxDepth % 2; depth <= maxDepth; depth += 2) {
+            firstDepth = depth;
+            nextPoint = -1;
+            int score = searchRoot(depth);
+            if (aborted) break;
+            bestPoint = nextPoint;
+            bestScore = score;
+            if (Math.abs(score) >= Score.FIVE.value) break;
+            // 第一轮不限时，保证总有结果
+            if (timeLimitMs > 0) {
+                if (deadline == 0) {
+                    deadline = startTime + timeLimitMs;
+                    // 之后各轮里嵌套的 VCX 也不能超过这一步的截止时间
+                    budget = budget.child(Math.max(0, deadline - System.currentTimeMillis()));
+                }
+                if (System.currentTimeMillis() > deadline) break;
+            }
+        }
         firstDepth = oriDep;
-        return new Position(getY(nextPoint), getX(nextPoint), score >= Score.FIVE.value);
+        deadline = 0;
+        // 连第一轮都被外部中断时，用搜到一半的结果
+        if (bestPoint == -1) bestPoint = nextPoint;
+        if (bestPoint == -1) return Position.EMPTY;
+        return new Position(getY(bestPoint), getX(bestPoint), bestScore >= Score.FIVE.value);
     }
 }
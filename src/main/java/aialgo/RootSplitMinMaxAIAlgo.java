@@ -0,0 +1,199 @@
+package aialgo;
+
+import aialgo.vcx.NegamaxVCXEnhancedContext;
+import aialgo.vcx.VCX;
+import chessboardalgo.IChessboardAIAlgo;
+import common.Position;
+import common.ThreadPoolContext;
+import lombok.Getter;
+import lombok.Setter;
+import scorecalculator.Score;
+import zobrist.TranspositionTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static zobrist.Zobrist.DISABLE_CACHE_MASK;
+
+// 根节点并行（young brothers wait）：排序最靠前的候选点先由当前线程单独搜完得到 alpha，
+// 其余候选点放进共享队列，worker 在各自克隆的棋盘和 CachedScoreManager 上搜索，
+// 当前最好的 alpha 通过原子变量发布，后开始的候选点用更窄的窗口
+public class RootSplitMinMaxAIAlgo extends ThreadSafeMinMaxAIAlgo {
+    private static final int INF = 99999999;
+    @Getter
+    @Setter
+    private int threads;
+    private final NegamaxVCXEnhancedContext context;
+    private final AtomicLong workerNodeCount = new AtomicLong();
+
+    public RootSplitMinMaxAIAlgo(IChessboardAIAlgo chessBoardAlgo, int enemyColor, int threads) {
+        this(chessBoardAlgo, enemyColor, 9, NegamaxVCXEnhancedContext.DISABLE, threads);
+    }
+
+    public RootSplitMinMaxAIAlgo(IChessboardAIAlgo chessBoardAlgo, int enemyColor, int depth,
+                                 NegamaxVCXEnhancedContext context, int threads) {
+        super(chessBoardAlgo, enemyColor, depth, context);
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive, got " + threads);
+        this.threads = threads;
+        this.context = context;
+    }
+
+    @Override
+    protected void prepareSearch(int maxDepth) {
+        super.prepareSearch(maxDepth);
+        workerNodeCount.set(0);
+    }
+
+    @Override
+    protected int searchRoot(int depth) {
+        if (threads == 1) return super.searchRoot(depth);
+        if (chessboardAlgo.steps() > context.startSteps && context.applyDeltaDepth == 0) {
+            Position pos = VCX.findWin(chessboardAlgo.clone(), humanColor, context.vcxDepth, budget);
+            if (pos != Position.EMPTY) {
+                nextPoint = pos.y * size + pos.x;
+                return Score.FIVE.value;
+            }
+        }
+        long cached = zobrist.probe();
+        int ttMove = cached == TranspositionTable.MISS ? -1 : TranspositionTable.move(cached);
+        int[] buffer = candidateBuffer(depth);
+        int cnt = generateOrderedCandidates(true, depth, ttMove, buffer);
+        if (cnt < 2) return super.searchRoot(depth);
+        nodeCount++;
+
+        int first = buffer[0];
+        int firstValue = searchMove(this, first, depth, -INF);
+        if (aborted) return -DISABLE_CACHE_MASK;
+        nextPoint = first;
+        if (firstValue >= Score.FIVE.value) return firstValue;
+
+        SplitRoot root = new SplitRoot(Arrays.copyOf(buffer, cnt), depth, firstValue, first);
+        // worker 的棋盘要在当前线程开始落子之前克隆
+        List<MinMaxAIAlgo> workers = new ArrayList<>();
+        for (int i = Math.min(threads - 1, cnt - 2); i > 0; i--) {
+            IChessboardAIAlgo board = chessboardAlgo.clone();
+            MinMaxAIAlgo worker = new MinMaxAIAlgo(board, humanColor, depth, context, zobrist.fork(board));
+            worker.setMoveOrdering(moveOrdering);
+            worker.setPrincipalVariationSearch(principalVariationSearch);
+            worker.prepareSearch(depth);
+            worker.budget = budget;
+            workers.add(worker);
+        }
+        root.workers = workers;
+        for (MinMaxAIAlgo worker : workers) {
+            ThreadPoolContext.threadPool.submit(() -> {
+                try {
+                    root.work(worker);
+                } finally {
+                    workerNodeCount.addAndGet(worker.getNodeCount());
+                }
+            });
+        }
+        // 当前线程也参与搜索，线程池没有空闲线程时相当于串行，不会互相等待
+        root.work(this);
+        if (!aborted) awaitWorkers(root);
+        // worker 在共享预算上超时、被取消或节点数用完时，它手上的候选点没搜完却也计入了 finished，
+        // 这一轮的结果不完整，不能当成准确值写进置换表；算出必胜后被停掉的不算
+        synchronized (root) {
+            if (root.bestValue < Score.FIVE.value) {
+                for (MinMaxAIAlgo worker : workers) {
+                    if (worker.aborted) aborted = true;
+                }
+            }
+        }
+        if (aborted) {
+            root.stopAll();
+            return -DISABLE_CACHE_MASK;
+        }
+        synchronized (root) {
+            nextPoint = root.bestMove;
+            return zobrist.setAndReturnScore(root.bestValue, depth, TranspositionTable.EXACT, root.bestMove);
+        }
+    }
+
+    // 只会等还在搜索中的候选点，没被领取的候选点已经由当前线程搜完
+    private void awaitWorkers(SplitRoot root) {
+        synchronized (root) {
+            while (root.finished < root.moves.length - 1) {
+                try {
+                    root.wait(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    aborted = true;
+                    return;
+                }
+                // 预算里已经包含了这一步的截止时间，装饰器取消这一轮时也能看到
+                if (budget.isExhausted() || deadline != 0 && System.currentTimeMillis() > deadline) {
+                    aborted = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static int searchMove(MinMaxAIAlgo searcher, int move, int depth, int alpha) {
+        int y = searcher.getY(move), x = searcher.getX(move);
+        searcher.addPiece(y, x, true);
+        int value = -searcher.negamax(false, depth - 1, -INF, -alpha, move);
+        searcher.removePiece(y, x, true);
+        return value;
+    }
+
+    public long getTotalNodeCount() {
+        return getNodeCount() + workerNodeCount.get();
+    }
+
+    private static class SplitRoot {
+        private final int[] moves;
+        private final int depth;
+        private final AtomicInteger next = new AtomicInteger(1);
+        private final AtomicInteger alpha;
+        private List<MinMaxAIAlgo> workers;
+        private volatile boolean stopped = false;
+        // 以下字段由 this 保护
+        private int bestValue;
+        private int bestMove;
+        private int finished = 0;
+
+        private SplitRoot(int[] moves, int depth, int firstValue, int firstMove) {
+            this.moves = moves;
+            this.depth = depth;
+            alpha = new AtomicInteger(firstValue);
+            bestValue = firstValue;
+            bestMove = firstMove;
+        }
+
+        private void work(MinMaxAIAlgo searcher) {
+            for (int i; (i = next.getAndIncrement()) < moves.length; ) {
+                if (!stopped) {
+                    int value = searchMove(searcher, moves[i], depth, alpha.get());
+                    if (!searcher.aborted) report(moves[i], value);
+                }
+                finish();
+                if (searcher.aborted) return;
+            }
+        }
+
+        // 窗口内的值是准确值，不超过开始时 alpha 的值只是上界，不会比当前最好的更好
+        private synchronized void report(int move, int value) {
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = move;
+                alpha.accumulateAndGet(value, Math::max);
+                if (value >= Score.FIVE.value) stopAll();
+            }
+        }
+
+        private synchronized void finish() {
+            if (++finished == moves.length - 1) notifyAll();
+        }
+
+        private void stopAll() {
+            stopped = true;
+            for (MinMaxAIAlgo worker : workers) worker.stop();
+        }
+    }
+}
@@ -18,7 +18,18 @@ public class ThreadSafeMinMaxAIAlgo extends MinMaxAIAlgo {
     }
 
     public ThreadSafeMinMaxAIAlgo(IChessboardAIAlgo chessBoardAlgo, int enemyColor, int depth, NegamaxVCXEnhancedContext context) {
-        super(chessBoardAlgo.clone(), enemyColor, depth, context);
+        this(chessBoardAlgo, enemyColor, depth, context, null);
+    }
+
+    // shareTableWith 不为空时和它共用置换表，后台思考用
+    public ThreadSafeMinMaxAIAlgo(IChessboardAIAlgo chessBoardAlgo, int enemyColor, int depth, NegamaxVCXEnhancedContext context,
+                                  MinMaxAIAlgo shareTableWith) {
+        this(chessBoardAlgo, chessBoardAlgo.clone(), enemyColor, depth, context, shareTableWith);
+    }
+
+    private ThreadSafeMinMaxAIAlgo(IChessboardAIAlgo chessBoardAlgo, IChessboardAIAlgo cloned, int enemyColor, int depth,
+                                   NegamaxVCXEnhancedContext context, MinMaxAIAlgo shareTableWith) {
+        super(cloned, enemyColor, depth, context, sharedZobrist(cloned, shareTableWith));
         originalChessboardAlgo = chessBoardAlgo;
         originalScoreManager = new CachedScoreManager(chessBoardAlgo);
     }
@@ -43,13 +54,20 @@ public class ThreadSafeMinMaxAIAlgo extends MinMaxAIAlgo {
     public Position aiFindPos() {
         try {
             cloneStatefulComponent();
-            Position res = super.aiFindPos();
-            semaphore.release();
-            return res;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            return Position.EMPTY;
         }
-        return Position.EMPTY;
+        try {
+            return super.aiFindPos();
+        } finally {
+            finishSearch();
+            semaphore.release();
+        }
+    }
+
+    // 搜索结束后、释放信号量之前调用，和 prepareSearch 一样只会有一次搜索在执行
+    protected void finishSearch() {
     }
 
     private void cloneStatefulComponent() throws InterruptedException {
@@ -0,0 +1,8 @@
+package aialgo;
+
+import chessboardalgo.IChessboardAIAlgo;
+
+// depth 和 VCX 一样按双方落子的总步数计
+public interface WinningAlgoFactory {
+    IWinningAlgo create(IChessboardAIAlgo chessBoardAlgo, int humanColor, int depth);
+}
@@ -57,7 +57,7 @@ public class AlmostMCTSWin extends MCTsBasedAIAlgo implements IWinningAlgo {
         }
         // enemy play then ai find vcx must win
         if (previousStep.getChildren().isEmpty()) {
-            Position result = new VCX(chessboardAlgo.clone(), humanColor, simulateVCXDepth).aiFindPos();
+            Position result = VCX.create(chessboardAlgo.clone(), humanColor, simulateVCXDepth).aiFindPos();
             simulateVCXDepth -= 2;
             return result;
         }
@@ -103,7 +103,7 @@ public class AlmostMCTSWin extends MCTsBasedAIAlgo implements IWinningAlgo {
         }
 
         if (node.step > 10 && node.step > rootStep + 1) {
-            Position vcx = new VCX(board.clone(), lastStepDonePlayer, simulateVCXDepth).aiFindPos();
+            Position vcx = VCX.findWin(board.clone(), lastStepDonePlayer, simulateVCXDepth);
             if (vcx != Position.EMPTY) {
                 node.setWinner(3 - lastStepDonePlayer);
                 return 3 - lastStepDonePlayer;
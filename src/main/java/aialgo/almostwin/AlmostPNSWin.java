@@ -3,12 +3,14 @@ package aialgo.almostwin;
 import aialgo.IAIAlgo;
 import aialgo.IWinningAlgo;
 import aialgo.almostwin.proofnumbersearch.Node;
-import aialgo.almostwin.proofnumbersearch.ProofNumberSearch;
+import aialgo.almostwin.proofnumbersearch.DepthFirstProofNumberSearch;
 import aialgo.vcx.VCX;
 import chessboardalgo.IChessboardAIAlgo;
 import common.InputValidator;
 import common.Position;
+import common.SearchBudget;
 import lombok.Getter;
+import lombok.Setter;
 import scorecalculator.CachedScoreManager;
 import scorecalculator.IScoreManager;
 
@@ -20,7 +22,7 @@ import static common.PositionConverter.getX;
 import static common.PositionConverter.getY;
 import static player.Player.enemyColor;
 
-public class AlmostPNSWin extends ProofNumberSearch implements IAIAlgo, IWinningAlgo {
+public class AlmostPNSWin extends DepthFirstProofNumberSearch implements IAIAlgo, IWinningAlgo {
     @Getter
     protected IChessboardAIAlgo chessboardAlgo;
     @Getter
@@ -33,6 +35,19 @@ public class AlmostPNSWin extends ProofNumberSearch implements IAIAlgo, IWinning
     private final int vcxDepth;
     private final int vcxCountLimit;
     private Node previousStep;
+    // 每个叶子上的 VCX 都在这次 pns 的预算下开子预算
+    @Setter
+    private SearchBudget parentBudget = null;
+    private SearchBudget budget = SearchBudget.unlimited();
+    // 用 df-pn 代替保留整棵树的 pns，内存有界，置换表跨步保留
+    @Setter
+    private boolean depthFirst = false;
+    // 大于 1 时用并行 pns，各 worker 在自己的棋盘副本上跑叶子的 VCX；df-pn 不受影响
+    @Getter
+    @Setter
+    private int threads = 1;
+    // 增量模式下跟着搜索棋盘落子/提子的评分，非增量模式为 null，每次展开新建
+    private IScoreManager searchScoreManager;
 
     public AlmostPNSWin(IChessboardAIAlgo chessboardAlgo, int humanColor, int timeLimitInMs, int vcxCountLimit, int vcxDepth) {
         InputValidator.checkColorValid(humanColor);
@@ -61,7 +76,17 @@ public class AlmostPNSWin extends ProofNumberSearch implements IAIAlgo, IWinning
         }
         Node.Status status = previousStep.getValue();
         if (status == UNKNOWN) {
-            pns(previousStep, chessboardAlgo.clone());
+            budget = SearchBudget.child(parentBudget, timeLimitInMs, SearchBudget.NO_LIMIT);
+            IChessboardAIAlgo board = chessboardAlgo.clone();
+            boolean parallel = !depthFirst && threads > 1;
+            searchScoreManager = incremental && !parallel ? new CachedScoreManager(board) : null;
+            try {
+                if (depthFirst) dfpn(previousStep, board, budget);
+                else if (parallel) parallelPns(previousStep, board, budget, threads);
+                else pns(previousStep, board, budget);
+            } finally {
+                searchScoreManager = null;
+            }
         }
         status = previousStep.getValue();
         if (status == PROVEN) {
@@ -75,7 +100,8 @@ public class AlmostPNSWin extends ProofNumberSearch implements IAIAlgo, IWinning
     protected void generateChildren(Node n, IChessboardAIAlgo chessboardAIAlgo) {
 
         int enemyColor = enemyColor(n.color);
-        List<Integer> candidates = new CachedScoreManager(chessboardAIAlgo).generateCandidatePiece(enemyColor);
+        IScoreManager sm = searchScoreManager != null ? searchScoreManager : new CachedScoreManager(chessboardAIAlgo);
+        List<Integer> candidates = sm.generateCandidatePiece(enemyColor);
 
         for (int candidate : candidates) {
             int x = getX(candidate, size), y = getY(candidate, size);
@@ -84,6 +110,18 @@ public class AlmostPNSWin extends ProofNumberSearch implements IAIAlgo, IWinning
         }
     }
 
+    @Override
+    protected void makeMove(IChessboardAIAlgo chessboardAIAlgo, Node n) {
+        super.makeMove(chessboardAIAlgo, n);
+        if (searchScoreManager != null) searchScoreManager.updateScore(n.y, n.x);
+    }
+
+    @Override
+    protected void unmakeMove(IChessboardAIAlgo chessboardAIAlgo, Node n) {
+        super.unmakeMove(chessboardAIAlgo, n);
+        if (searchScoreManager != null) searchScoreManager.updateScore(n.y, n.x);
+    }
+
     @Override
     protected boolean resourcesAvailable(long startTimeInMs, int count) {
         return System.currentTimeMillis() - startTimeInMs < timeLimitInMs && count < vcxCountLimit;
@@ -93,7 +131,9 @@ public class AlmostPNSWin extends ProofNumberSearch implements IAIAlgo, IWinning
     protected void evaluate(Node n, IChessboardAIAlgo chessboardAIAlgo) {
         System.out.println(n.x + "," + n.y + "," + n.step);
         //chessboardAIAlgo.print();
-        Position p = new VCX(chessboardAIAlgo, n.color, vcxDepth).aiFindPos();
+        IWinningAlgo vcx = VCX.create(chessboardAIAlgo, n.color, vcxDepth);
+        vcx.setParentBudget(budget);
+        Position p = vcx.aiFindPos();
         if (p != Position.EMPTY) {
             n.setValue(n.type == OR ? PROVEN : DISPROVEN);
         }
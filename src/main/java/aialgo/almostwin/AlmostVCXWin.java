@@ -6,6 +6,8 @@ import chessboardalgo.IChessboardAIAlgo;
 import common.BoardToString;
 import common.DebugContext;
 import common.Position;
+import common.SearchBudget;
+import lombok.Setter;
 import scorecalculator.AlmostVCXWinCachedScoreManager;
 import aialgo.vcx.VCX;
 import aialgo.vcx.VCXOptimization;
@@ -19,7 +21,16 @@ import java.util.concurrent.*;
 import static consistent.ConsistentPattern.canonical;
 
 public class AlmostVCXWin extends RecursiveBaseAIAlgo implements IWinningAlgo {
-    private static final int TIME_LIMIT_MS = 45_000;
+    // 每次 attack 在 parentBudget 下开一个子预算，里面每个 VCX 再在它下面开子预算
+    @Setter
+    private long timeLimitMs = 45_000;
+    @Setter
+    private long nodeLimit = SearchBudget.NO_LIMIT;
+    @Setter
+    private SearchBudget parentBudget = null;
+    private SearchBudget budget = SearchBudget.unlimited();
+    private long nodeCount;
+    private boolean aborted;
     public long startTime;
     private int depth;
     protected AlmostVCXWinCachedScoreManager myScoreManager;
@@ -46,6 +57,9 @@ public class AlmostVCXWin extends RecursiveBaseAIAlgo implements IWinningAlgo {
 
     public int attack() {
         startTime = System.currentTimeMillis();
+        budget = SearchBudget.child(parentBudget, timeLimitMs, nodeLimit);
+        nodeCount = 0;
+        aborted = false;
         List<Integer> candidates = myScoreManager.findBlockOrNonBlockFour(aiColor, null);
         if (!candidates.isEmpty() && candidates.get(0) < 0) return -candidates.get(0)-1;
         // 忽略 黑棋冲4 布局，防止指数爆炸
@@ -54,7 +68,7 @@ public class AlmostVCXWin extends RecursiveBaseAIAlgo implements IWinningAlgo {
         debugContext.debugInfo("进攻层结果：");
 
         for (int candidate : candidates) {
-            if (System.currentTimeMillis() - startTime > TIME_LIMIT_MS || Thread.currentThread().isInterrupted()) break;
+            if (budget.isExhausted()) break;
             if (!debugContext.isInDebugStep(0,0, candidate)) continue;
             int y = getY(candidate), x = getX(candidate);
             addPiece(y, x, true);
@@ -152,7 +166,7 @@ public class AlmostVCXWin extends RecursiveBaseAIAlgo implements IWinningAlgo {
 
     // 白棋非冲4 防守
     private boolean nonBlockFourDefendFail() {
-        if (System.currentTimeMillis() - startTime >= TIME_LIMIT_MS || Thread.currentThread().isInterrupted()) return false;
+        if (isAborted()) return false;
         List<Integer> candidates = myScoreManager.findBlockOrNonBlockFour(humanColor, null);
         if (!candidates.isEmpty() && candidates.get(0) < 0) return false;
         debugContext.debugInfoWithNonEmptyDebugSteps("防御层:" + chessboardAlgo.generateStepsCode());
@@ -160,18 +174,30 @@ public class AlmostVCXWin extends RecursiveBaseAIAlgo implements IWinningAlgo {
         assert !candidates.isEmpty();
         ExecutorService threadPool = Executors.newFixedThreadPool(candidates.size());
         CompletionService<Boolean> completionService = new ExecutorCompletionService<>(threadPool);
+        // 这一批 VCX 共用一个子预算，有一个算杀失败就取消其余的
+        SearchBudget batch = budget.child(SearchBudget.NO_LIMIT);
         for (int candidate : candidates) {
             debugContext.debugInfoWithNonEmptyDebugSteps(String.format("y:%s,x:%s",getY(candidate),getX(candidate)));
             addPiece(candidate, false);
-            completionService.submit(asyncVCX(depth));
+            completionService.submit(asyncVCX(depth, batch));
             removePiece(candidate, false);
         }
         // 对手只要任何一个算杀不成功，我们都算防御住了，防御住了, return false
         boolean res = !anyVCXFail(threadPool, completionService, candidates.size());
+        batch.cancel();
         debugContext.debugInfoWithNonEmptyDebugSteps("结果:" + res);
         return res;
     }
 
+    // 和 VCX、VCF 一样每 CHECK_INTERVAL 个节点才向预算结算一次，超出后一直返回 true
+    private boolean isAborted() {
+        if ((++nodeCount & SearchBudget.CHECK_MASK) == 0
+                && (Thread.currentThread().isInterrupted() || budget.consume(SearchBudget.CHECK_INTERVAL))) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
     private boolean anyVCXFail(ExecutorService threadPool, CompletionService<Boolean> completionService, int taskCount) {
         try {
             boolean anyVCXFail = false;
@@ -198,9 +224,11 @@ public class AlmostVCXWin extends RecursiveBaseAIAlgo implements IWinningAlgo {
         }
     }
 
-    private Callable<Boolean> asyncVCX(int depth) {
+    private Callable<Boolean> asyncVCX(int depth, SearchBudget batch) {
         VCX tmp = new VCX(chessboardAlgo.clone(), humanColor, depth);
         VCX tmp2 = new VCX(chessboardAlgo.clone(), humanColor, Math.min(21, depth - 6), VCXOptimization.SLOW);
+        tmp.setParentBudget(batch);
+        tmp2.setParentBudget(batch);
         return () -> (tmp.aiFindPos() != Position.EMPTY || tmp2.aiFindPos() != Position.EMPTY);
     }
 
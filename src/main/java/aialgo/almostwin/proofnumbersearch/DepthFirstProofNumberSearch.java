@@ -0,0 +1,200 @@
+package aialgo.almostwin.proofnumbersearch;
+
+import chessboardalgo.IChessboardAIAlgo;
+import common.SearchBudget;
+import zobrist.Zobrist;
+
+import static aialgo.almostwin.proofnumbersearch.Node.INFINITY;
+import static aialgo.almostwin.proofnumbersearch.Node.Status.*;
+import static aialgo.almostwin.proofnumbersearch.Node.Type.OR;
+
+// df-pn (Nagai)：按阈值深度优先的证明数搜索，不在内存里保留整棵树
+// 每个局面的 (proof, disproof) 存在按 Zobrist hash 索引的定长置换表里，被替换掉的局面再到达时重新估值
+// 沿着同一块棋盘 makeMove/unmakeMove 往下走，不用每轮克隆；展开仍然调用 generateChildren/evaluate，生成的 Node 只在这一层用
+// phi/delta：OR 节点 phi = proof、delta = disproof，AND 节点反过来；phi(n) = min delta(c)，delta(n) = sum phi(c)
+public abstract class DepthFirstProofNumberSearch extends ProofNumberSearch {
+    // 置换表在第一次 dfpn 时才分配，只用 pns 的子类不占这块内存
+    private long[] tableKeys;
+    private int[] tableProofs, tableDisproofs;
+    private final int tableMask;
+    private long[] zobristKeys;
+    private int size;
+    private long hash;
+    private SearchBudget budget;
+    private long startTimeInMs;
+    private int expandCount;
+    private boolean aborted;
+
+    protected DepthFirstProofNumberSearch() {
+        this(1 << 20);
+    }
+
+    // tableSize 个条目，必须是 2 的幂
+    protected DepthFirstProofNumberSearch(int tableSize) {
+        if (tableSize <= 0 || Integer.bitCount(tableSize) != 1)
+            throw new IllegalArgumentException("table size must be a power of two, got " + tableSize);
+        tableMask = tableSize - 1;
+    }
+
+    // 结论写回 root 和它的子节点，调用方照旧用 root.getValue() 和 root.findWinMove()
+    public void dfpn(Node root, IChessboardAIAlgo board, SearchBudget budget) {
+        if (tableKeys == null) {
+            tableKeys = new long[tableMask + 1];
+            tableProofs = new int[tableMask + 1];
+            tableDisproofs = new int[tableMask + 1];
+        }
+        size = board.getSize();
+        zobristKeys = Zobrist.keys(size);
+        hash = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int val = board.getValInBoard(x, y);
+                if (val != 0) hash ^= key(y, x, val);
+            }
+        }
+        this.budget = budget;
+        startTimeInMs = System.currentTimeMillis();
+        expandCount = 0;
+        aborted = false;
+        root.children.clear();
+        mid(root, board, INFINITY, INFINITY);
+        // 根节点直接命中置换表时没有展开过
+        if (root.children.isEmpty() && root.getValue() == PROVEN) expandChildren(root, board);
+        boolean winFound = false;
+        for (Node c : root.children) {
+            int slot = probe(hash ^ key(c.y, c.x, c.color));
+            if (slot == -1) continue;
+            if (tableProofs[slot] == 0) c.setValue(PROVEN);
+            else if (tableDisproofs[slot] == 0) c.setValue(DISPROVEN);
+            winFound |= c.getValue() == PROVEN;
+        }
+        // 必胜的子节点已经被挤出置换表，给不出着法，当成没证明出来
+        if (root.getValue() == PROVEN && root.type == OR && !winFound) root.setValue(UNKNOWN);
+    }
+
+    private void mid(Node n, IChessboardAIAlgo board, int thPhi, int thDelta) {
+        int slot = probe(hash);
+        if (slot == -1) {
+            // 第一次到达这个局面才估值
+            if (!resourcesAvailable(startTimeInMs, expandCount) || budget.consume(1)) {
+                aborted = true;
+                return;
+            }
+            expandCount++;
+            evaluate(n, board);
+            if (n.getValue() != UNKNOWN) {
+                store(hash, n.proof, n.disproof);
+                return;
+            }
+            n.proof = n.disproof = 1;
+            store(hash, 1, 1);
+        } else {
+            n.proof = tableProofs[slot];
+            n.disproof = tableDisproofs[slot];
+            if (n.proof == 0 || n.disproof == 0 || phi(n) >= thPhi || delta(n) >= thDelta) {
+                if (n.proof == 0) n.setValue(PROVEN);
+                else if (n.disproof == 0) n.setValue(DISPROVEN);
+                return;
+            }
+        }
+        expandChildren(n, board);
+        // 没有可走的点，进攻方证明不了
+        if (n.children.isEmpty()) {
+            n.setValue(DISPROVEN);
+            store(hash, n.proof, n.disproof);
+            return;
+        }
+        while (true) {
+            int minDelta = INFINITY, secondDelta = INFINITY, sumPhi = 0, bestPhi = 0;
+            Node best = null;
+            for (Node c : n.children) {
+                int childSlot = probe(hash ^ key(c.y, c.x, c.color));
+                int proof = childSlot == -1 ? 1 : tableProofs[childSlot];
+                int disproof = childSlot == -1 ? 1 : tableDisproofs[childSlot];
+                int childPhi = c.type == OR ? proof : disproof, childDelta = c.type == OR ? disproof : proof;
+                sumPhi = Math.min(INFINITY, sumPhi + childPhi);
+                if (childDelta < minDelta) {
+                    secondDelta = minDelta;
+                    minDelta = childDelta;
+                    best = c;
+                    bestPhi = childPhi;
+                } else if (childDelta < secondDelta) {
+                    secondDelta = childDelta;
+                }
+            }
+            setPhiDelta(n, minDelta, sumPhi);
+            store(hash, n.proof, n.disproof);
+            if (aborted || minDelta >= thPhi || sumPhi >= thDelta) break;
+            int childThPhi = Math.min(INFINITY, thDelta - sumPhi + bestPhi);
+            int childThDelta = Math.min(thPhi, secondDelta + 1);
+            long childKey = key(best.y, best.x, best.color);
+            makeMove(board, best);
+            hash ^= childKey;
+            mid(best, board, childThPhi, childThDelta);
+            hash ^= childKey;
+            unmakeMove(board, best);
+            // 子节点的 Node 只在这一层用，孙子节点不用留着，再次到达时按 best 缓存的候选点重建
+            best.children.clear();
+        }
+        if (n.proof == 0) n.setValue(PROVEN);
+        else if (n.disproof == 0) n.setValue(DISPROVEN);
+    }
+
+    // 同一个节点只调用一次 generateChildren，之后按缓存的候选点重建子节点
+    // mid 每次回溯都清掉子节点，只有 df-pn 会反复展开同一个节点；pns 保留整棵树，直接调用 generateChildren
+    private void expandChildren(Node n, IChessboardAIAlgo chessboardAIAlgo) {
+        if (!n.children.isEmpty()) return;
+        int size = chessboardAIAlgo.getSize();
+        if (n.candidates == null) {
+            generateChildren(n, chessboardAIAlgo);
+            n.candidates = new int[n.children.size()];
+            for (int i = 0; i < n.candidates.length; i++) {
+                Node c = n.children.get(i);
+                n.candidates[i] = c.y * size + c.x;
+            }
+            return;
+        }
+        for (int candidate : n.candidates) {
+            n.children.add(new Node(n, candidate / size, candidate % size, 3 - n.color, n.step + 1));
+        }
+    }
+
+    private static int phi(Node n) {
+        return n.type == OR ? n.proof : n.disproof;
+    }
+
+    private static int delta(Node n) {
+        return n.type == OR ? n.disproof : n.proof;
+    }
+
+    private static void setPhiDelta(Node n, int phi, int delta) {
+        if (n.type == OR) {
+            n.proof = phi;
+            n.disproof = delta;
+        } else {
+            n.proof = delta;
+            n.disproof = phi;
+        }
+    }
+
+    private long key(int y, int x, int color) {
+        return zobristKeys[((y * size + x) << 1) + color - 1];
+    }
+
+    private int probe(long key) {
+        int slot = (int) (key ^ key >>> 32) & tableMask;
+        return tableKeys[slot] == key && key != 0 ? slot : -1;
+    }
+
+    // 总是替换：df-pn 沿着当前路径反复更新，最新的值最有用
+    private void store(long key, int proof, int disproof) {
+        int slot = (int) (key ^ key >>> 32) & tableMask;
+        tableKeys[slot] = key;
+        tableProofs[slot] = proof;
+        tableDisproofs[slot] = disproof;
+    }
+
+    public int getExpandCount() {
+        return expandCount;
+    }
+}
@@ -32,6 +32,11 @@ public class Node {
 
 
     protected boolean expanded;
+    // df-pn 用：第一次展开时生成的候选点 (y * size + x)，子节点被清掉后按它重建，不用再调用 generateChildren
+    int[] candidates;
+    // 并行 pns 用，由节点自己的锁保护：经过它正在搜索的 worker 数，以及是否正在被某个 worker 展开
+    int virtual;
+    boolean busy;
     protected int proof;
     protected int disproof;
     public final int step;
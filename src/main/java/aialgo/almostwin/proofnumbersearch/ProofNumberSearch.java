@@ -1,17 +1,46 @@
 package aialgo.almostwin.proofnumbersearch;
 
 import chessboardalgo.IChessboardAIAlgo;
+import common.SearchBudget;
+import common.ThreadPoolContext;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static aialgo.almostwin.proofnumbersearch.Node.INFINITY;
 import static aialgo.almostwin.proofnumbersearch.Node.Status.*;
 import static aialgo.almostwin.proofnumbersearch.Node.Type.AND;
 
 public abstract class ProofNumberSearch {
+    // 增量模式：pns 只用传进来的一块棋盘，沿着路径 makeMove 走到 most-proving 节点，更新完再 unmakeMove 退回根节点
+    // 叶子的 evaluate 也直接用这块棋盘，要求 evaluate 返回时棋盘复原
+    @Getter
+    @Setter
+    protected boolean incremental = false;
+    // 并行 pns 里每个经过节点的 worker 给它的证明数/反证数临时加上的量
+    private static final int VIRTUAL_LOSS = 1;
+    // 上一次 pns/parallelPns 展开的叶子数和其中 evaluate 直接得出结论的叶子数，用来对比串行和并行
+    @Getter
+    private int iterations;
+    @Getter
+    private int solvedLeaves;
 
     protected abstract void generateChildren(Node n, IChessboardAIAlgo chessboardAIAlgo);
     protected abstract boolean resourcesAvailable(long startTimeInMs, int count);
     protected abstract void evaluate(Node root, IChessboardAIAlgo chessboardAIAlgo);
 
+    // 子类在自己的评分等增量结构上跟着落子/提子时覆盖这两个方法
+    protected void makeMove(IChessboardAIAlgo chessboardAIAlgo, Node n) {
+        chessboardAIAlgo.setPiece(n.x, n.y, n.color);
+    }
+
+    protected void unmakeMove(IChessboardAIAlgo chessboardAIAlgo, Node n) {
+        chessboardAIAlgo.setPiece(n.x, n.y, 0);
+    }
+
     protected Node selectMostProvingNode( Node n, IChessboardAIAlgo chessboardAIAlgo ) {
         while ( n.expanded ) {
             int value = INFINITY;
@@ -33,19 +62,21 @@ public abstract class ProofNumberSearch {
                     }
                 }
             }
-            if (best == null) {
-                System.out.println();
-            }
-            chessboardAIAlgo.setPiece(best.x, best.y, best.color);
+            // 展开时没有子节点的叶子已经标成 DISPROVEN，没解出来的内部节点总有没解出来的子节点
+            if (best == null) throw new IllegalStateException("expanded node has no unsolved child");
+            makeMove(chessboardAIAlgo, best);
             n = best;
         }
         return n;
     }
 
     protected void expandNode(Node n, IChessboardAIAlgo chessboardAIAlgo) {
-        evaluate( n, chessboardAIAlgo.clone());
-        if (n.getValue() == UNKNOWN)
+        evaluate( n, incremental ? chessboardAIAlgo : chessboardAIAlgo.clone());
+        if (n.getValue() == UNKNOWN) {
             generateChildren( n, chessboardAIAlgo);
+            // 没有可走的点，进攻方证明不了，和并行 pns、df-pn 一样
+            if (n.children.isEmpty()) n.setValue(DISPROVEN);
+        }
 //        for (Node c : n.children) {
 //            IChessboardAIAlgo cloned = chessboardAIAlgo.clone();
 //            cloned.setPiece(c.x, c.y, c.color);
@@ -104,17 +135,262 @@ public abstract class ProofNumberSearch {
     }
 
     public void pns(Node root, IChessboardAIAlgo aiAlgo) {
+        pns(root, aiAlgo, SearchBudget.unlimited());
+    }
+
+    // budget 耗尽或被取消时停止扩展，已经展开的树保留
+    public void pns(Node root, IChessboardAIAlgo aiAlgo, SearchBudget budget) {
         evaluate( root, aiAlgo);
         setProofAndDisproofNumbers( root );
         long startTimeInMs = System.currentTimeMillis();
-        int i = 0;
-        while ( root.proof != 0 && root.disproof != 0 && resourcesAvailable(startTimeInMs, i) ) {
-            IChessboardAIAlgo chessboardAIAlgo = aiAlgo.clone();
+        int i = 0, solved = 0;
+        while ( root.proof != 0 && root.disproof != 0 && resourcesAvailable(startTimeInMs, i) && !budget.consume(1) ) {
+            IChessboardAIAlgo chessboardAIAlgo = incremental ? aiAlgo : aiAlgo.clone();
             Node mostProving = selectMostProvingNode( root, chessboardAIAlgo);
             expandNode( mostProving, chessboardAIAlgo);
             updateAncestors( mostProving, root );
+            if (incremental) {
+                for (Node p = mostProving; p != root; p = p.parent) unmakeMove(aiAlgo, p);
+            }
+            if (mostProving.getValue() != UNKNOWN) solved++;
             i++;
         }
+        iterations = i;
+        solvedLeaves = solved;
+    }
+
+    // 并行 pns：threads 个 worker（含当前线程）共用一棵树
+    // 选 most-proving 节点时给路径上的节点临时加上虚拟证明数/反证数，其它 worker 因此会走到别的叶子；
+    // 叶子在各自克隆的棋盘上 evaluate/generateChildren，不持锁，结果再逐个节点加锁合并回树上，加锁顺序总是父节点在前
+    // 不走增量模式，evaluate/generateChildren 会被多个线程同时调用
+    public void parallelPns(Node root, IChessboardAIAlgo aiAlgo, SearchBudget budget, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive, got " + threads);
+        evaluate( root, aiAlgo);
+        setProofAndDisproofNumbers( root );
+        ParallelRun run = new ParallelRun(root, aiAlgo, budget);
+        for (int i = 1; i < threads; i++) ThreadPoolContext.threadPool.submit(run::work);
+        run.work();
+        run.await();
+        iterations = run.iterations.get();
+        solvedLeaves = run.solved.get();
+    }
+
+    private class ParallelRun {
+        private final Node root;
+        private final IChessboardAIAlgo aiAlgo;
+        private final SearchBudget budget;
+        private final long startTimeInMs = System.currentTimeMillis();
+        private final AtomicInteger iterations = new AtomicInteger(), solved = new AtomicInteger();
+        private volatile boolean stopped = false;
+        // 由 this 保护，还没开始的 worker 看到 stopped 就直接退出，不用等线程池调度到它
+        private int active = 0;
+        // 由 this 保护，合并完一个叶子加一，没有叶子可走的 worker 等它变化
+        private int merged = 0;
+
+        private ParallelRun(Node root, IChessboardAIAlgo aiAlgo, SearchBudget budget) {
+            this.root = root;
+            this.aiAlgo = aiAlgo;
+            this.budget = budget;
+        }
+
+        private void work() {
+            synchronized (this) {
+                if (stopped) return;
+                active++;
+            }
+            try {
+                List<Node> path = new ArrayList<>();
+                while (!stopped) {
+                    if (isSolved() || !resourcesAvailable(startTimeInMs, iterations.get()) || budget.isExhausted()) {
+                        stop();
+                        break;
+                    }
+                    int seen = merged();
+                    path.clear();
+                    Node leaf = select(path);
+                    if (leaf == null) {
+                        // 能走的叶子都在别的 worker 手上，等有结果合并回来再选，不占锁也不计预算
+                        if (!awaitMerge(seen)) break;
+                        continue;
+                    }
+                    // 只有真正展开的叶子计入预算
+                    budget.consume(1);
+                    IChessboardAIAlgo board = aiAlgo.clone();
+                    for (int i = 1; i < path.size(); i++) makeMove(board, path.get(i));
+                    expand(leaf, board);
+                    backup(path);
+                    iterations.incrementAndGet();
+                    synchronized (this) {
+                        merged++;
+                        notifyAll();
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    active--;
+                    notifyAll();
+                }
+            }
+        }
+
+        private synchronized int merged() {
+            return merged;
+        }
+
+        // 超时也返回，回到循环开头重新检查时间和预算；被中断时停掉整个搜索
+        private synchronized boolean awaitMerge(int seen) {
+            if (stopped || merged != seen) return true;
+            try {
+                wait(50);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+                return false;
+            }
+        }
+
+        private synchronized void stop() {
+            stopped = true;
+            notifyAll();
+        }
+
+        private synchronized void await() {
+            stop();
+            while (active > 0) {
+                try {
+                    wait(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private boolean isSolved() {
+            synchronized (root) {
+                return root.proof == 0 || root.disproof == 0;
+            }
+        }
+
+        // 从根走到一个没展开的叶子，路径上除根以外的节点 virtual 加一，叶子标记 busy；撞上别人的叶子返回 null
+        private Node select(List<Node> path) {
+            Node n = root;
+            path.add(n);
+            boolean collided = false;
+            while (!collided) {
+                Node best = null;
+                synchronized (n) {
+                    if (!n.expanded) {
+                        if (!n.busy && n.getValue() == UNKNOWN) {
+                            n.busy = true;
+                            return n;
+                        }
+                        collided = true;
+                    } else {
+                        int value = INFINITY;
+                        for (Node c : n.children) {
+                            synchronized (c) {
+                                if (c.getValue() != UNKNOWN) continue;
+                                int v = inflate(n.type == AND ? c.disproof : c.proof, c.virtual);
+                                if (v < value) {
+                                    best = c;
+                                    value = v;
+                                }
+                            }
+                        }
+                        if (best == null) {
+                            collided = true;
+                        } else {
+                            synchronized (best) {
+                                best.virtual++;
+                            }
+                        }
+                    }
+                }
+                if (best != null) {
+                    path.add(best);
+                    n = best;
+                }
+            }
+            for (int i = 1; i < path.size(); i++) {
+                Node p = path.get(i);
+                synchronized (p) {
+                    p.virtual--;
+                }
+            }
+            return null;
+        }
+
+        // 在临时节点上 evaluate/generateChildren，避免持着叶子的锁跑 VCX
+        private void expand(Node leaf, IChessboardAIAlgo board) {
+            Node scratch = new Node(leaf.parent, leaf.y, leaf.x, leaf.color, leaf.step);
+            evaluate(scratch, board);
+            List<Node> children = new ArrayList<>();
+            if (scratch.getValue() == UNKNOWN) {
+                generateChildren(scratch, board);
+                for (Node c : scratch.children) children.add(new Node(leaf, c.y, c.x, c.color, c.step));
+            } else {
+                solved.incrementAndGet();
+            }
+            synchronized (leaf) {
+                if (scratch.getValue() != UNKNOWN) {
+                    leaf.setValue(scratch.getValue());
+                } else if (children.isEmpty()) {
+                    // 没有可走的点，进攻方证明不了
+                    leaf.setValue(DISPROVEN);
+                }
+                leaf.children.addAll(children);
+                leaf.expanded = true;
+                leaf.busy = false;
+                setProofAndDisproofNumbers(leaf);
+            }
+        }
+
+        // 从叶子往上逐层去掉虚拟量并按子节点重算，每次只持有父节点和正在读的一个子节点的锁
+        private void backup(List<Node> path) {
+            for (int i = path.size() - 1; i > 0; i--) {
+                Node c = path.get(i), p = path.get(i - 1);
+                synchronized (c) {
+                    c.virtual--;
+                }
+                synchronized (p) {
+                    update(p);
+                }
+            }
+        }
+
+        private void update(Node p) {
+            if (p.getValue() != UNKNOWN || p.children.isEmpty()) return;
+            int proof, disproof;
+            if (p.type == AND) {
+                proof = 0;
+                disproof = INFINITY;
+            } else {
+                proof = INFINITY;
+                disproof = 0;
+            }
+            for (Node c : p.children) {
+                synchronized (c) {
+                    if (p.type == AND) {
+                        proof = Math.min(INFINITY, proof + c.proof);
+                        disproof = Math.min(disproof, c.disproof);
+                    } else {
+                        proof = Math.min(proof, c.proof);
+                        disproof = Math.min(INFINITY, disproof + c.disproof);
+                    }
+                }
+            }
+            p.proof = proof;
+            p.disproof = disproof;
+            if (proof == 0) p.setValue(PROVEN);
+            else if (disproof == 0) p.setValue(DISPROVEN);
+        }
+    }
+
+    private static int inflate(int value, int virtual) {
+        if (virtual == 0 || value >= INFINITY) return value;
+        return Math.min(INFINITY, value + virtual * VIRTUAL_LOSS);
     }
 
 
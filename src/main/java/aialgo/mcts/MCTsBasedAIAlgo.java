@@ -36,6 +36,12 @@ public abstract class MCTsBasedAIAlgo implements IAIAlgo {
     protected abstract MCTSNode aiFindPos(MCTSNode root);
 
     private MCTSNode aiFindPos(int rootPlayer, int step) {
+        // 上一步搜过的子树还对得上当前局面时接着用，访问次数和胜负结论都保留
+        if (previousStep != null && previousStep.step == step && previousStep.getPlayer() == rootPlayer) {
+            MCTSNode root = previousStep;
+            root.setParent(null);
+            return aiFindPos(root);
+        }
         return aiFindPos(new MCTSNode(chessboardAlgo, rootPlayer, -1, -1, step));
     }
 
@@ -55,8 +61,14 @@ public abstract class MCTsBasedAIAlgo implements IAIAlgo {
     @Override
     public void setPieceCallBack(int y, int x, int player, boolean isAI) {
         scoreManager.updateScore(y, x);
-        if (previousStep != null && player == humanColor)
+        if (previousStep == null) return;
+        if (player == humanColor) {
             previousStep = previousStep.findChildren(y, x);
+        } else if (previousStep.y != y || previousStep.x != x) {
+            // 实际下的不是 MCTS 选的点（比如被外层的 decorator 换掉了）
+            MCTSNode parent = previousStep.getParent();
+            previousStep = parent == null ? null : parent.findChildren(y, x);
+        }
     }
 
     protected void expand(MCTSNode node) {
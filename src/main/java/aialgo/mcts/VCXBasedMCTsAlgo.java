@@ -42,8 +42,8 @@ public class VCXBasedMCTsAlgo extends MCTsBasedAIAlgo {
         }
         if (node.step > 10 && node.step > rootStep + 1) {
             wholeVCXCnt++;
-            Position vcx = new VCX(board.clone(), lastStepDonePlayer,
-                    node.step > rootStep + 3 ? simulationVCXDepth : simulationVCXDepth + 2).aiFindPos();
+            Position vcx = VCX.findWin(board.clone(), lastStepDonePlayer,
+                    node.step > rootStep + 3 ? simulationVCXDepth : simulationVCXDepth + 2);
 
             if (vcx != Position.EMPTY) {
                 node.setWinner(3 - lastStepDonePlayer);
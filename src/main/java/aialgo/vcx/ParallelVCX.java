@@ -0,0 +1,169 @@
+package aialgo.vcx;
+
+import chessboardalgo.IChessboardAIAlgo;
+import common.DebugContext;
+import common.Position;
+import common.ThreadPoolContext;
+import lombok.Getter;
+import lombok.Setter;
+import scorecalculator.Score;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static scorecalculator.VCXCachedScoreManager.pos;
+import static scorecalculator.VCXCachedScoreManager.score;
+
+// 根节点并行的 VCX：根节点的进攻候选点放进共享队列，worker 在各自克隆的棋盘上证明，
+// 所有实例共用一个 ConcurrentHashMap 作为局面缓存，任何一个候选点证明必胜后停掉其余的
+// 需要全局换成并行算杀时：VCX.defaultFactory = (board, human, depth) -> new ParallelVCX(board, human, depth, threads)
+public class ParallelVCX extends VCX {
+    @Getter
+    @Setter
+    private int threads;
+    // 同一次 aiFindPos 的各轮迭代加深复用，棋盘在根节点上是同一个局面
+    private List<VCX> workers;
+
+    public ParallelVCX(IChessboardAIAlgo chessBoardAlgo, int humanColor, int firstDepth, int threads) {
+        this(chessBoardAlgo, humanColor, firstDepth, VCXOptimization.FAST, threads);
+    }
+
+    public ParallelVCX(IChessboardAIAlgo chessBoardAlgo, int humanColor, int firstDepth,
+                       VCXOptimization killOptimization, int threads) {
+        super(chessBoardAlgo, humanColor, firstDepth, killOptimization, new ConcurrentHashMap<>());
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive, got " + threads);
+        this.threads = threads;
+    }
+
+    @Override
+    public Position aiFindPos() {
+        workers = null;
+        try {
+            return super.aiFindPos();
+        } finally {
+            // 兜底：aiFindPos 返回后不能还有 worker 在线程池里写共享的局面缓存
+            if (workers != null) workers.forEach(VCX::stop);
+            workers = null;
+        }
+    }
+
+    @Override
+    boolean attackAll(int role, int depth, long[] candidates, int candidateCnt) {
+        if (threads == 1 || depth != firstDepth || candidateCnt < 2 || debugContext != DebugContext.DISABLE)
+            return super.attackAll(role, depth, candidates, candidateCnt);
+        // 和串行一样，每个候选点带上它之前最后一个非防守点作为剪枝依据
+        SplitRoot root = new SplitRoot(role, depth, candidateCnt);
+        int maxPoint = -1, aIMaxPointScore = 0;
+        for (int i = 0; i < candidateCnt; i++) {
+            int pos = pos(candidates[i]), score = score(candidates[i]);
+            if (score > -Score.FIVE.value) {
+                maxPoint = pos;
+                aIMaxPointScore = score;
+            }
+            root.moves[i] = pos;
+            root.maxPoints[i] = maxPoint;
+            root.maxPointScores[i] = aIMaxPointScore;
+        }
+        // worker 的棋盘要在当前线程开始落子之前克隆
+        if (workers == null) {
+            workers = new ArrayList<>();
+            for (int i = threads - 1; i > 0; i--) workers.add(fork());
+        }
+        int workerCnt = Math.min(workers.size(), candidateCnt - 1);
+        root.searchers.add(this);
+        for (int i = 0; i < workerCnt; i++) {
+            VCX worker = workers.get(i);
+            worker.prepareRoot(depth);
+            root.searchers.add(worker);
+        }
+        for (int i = 0; i < workerCnt; i++) {
+            VCX worker = workers.get(i);
+            ThreadPoolContext.threadPool.submit(() -> root.work(worker));
+        }
+        // 当前线程也参与证明，线程池没有空闲线程时相当于串行，不会互相等待
+        root.work(this);
+        if (!aborted) awaitWorkers(root);
+        synchronized (root) {
+            if (root.winMove != -1) {
+                // 当前线程是被别的 worker 停掉的，不算超时
+                prepareRoot(depth);
+                nextPoint = root.winMove;
+                return true;
+            }
+        }
+        // 有 worker 超时或被中断，没证明出来的候选点不代表不能赢
+        for (int i = 0; i < workerCnt; i++) {
+            if (workers.get(i).aborted) aborted = true;
+        }
+        // 当前线程超时或被中断时 worker 还在证明，中断信号到不了它们的线程，要显式停掉
+        if (aborted) root.stopAll();
+        return false;
+    }
+
+    // 只会等还在证明中的候选点，没被领取的候选点已经由当前线程证明完
+    private void awaitWorkers(SplitRoot root) {
+        synchronized (root) {
+            while (root.finished < root.moves.length && root.winMove == -1) {
+                try {
+                    root.wait(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    aborted = true;
+                    return;
+                }
+                if (budget.isExhausted()) {
+                    aborted = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class SplitRoot {
+        private final int role, depth;
+        private final int[] moves, maxPoints, maxPointScores;
+        private final AtomicInteger next = new AtomicInteger(0);
+        private final List<VCX> searchers = new ArrayList<>();
+        private volatile boolean stopped = false;
+        // 以下字段由 this 保护
+        private int winMove = -1;
+        private int finished = 0;
+
+        private SplitRoot(int role, int depth, int cnt) {
+            this.role = role;
+            this.depth = depth;
+            moves = new int[cnt];
+            maxPoints = new int[cnt];
+            maxPointScores = new int[cnt];
+        }
+
+        private void work(VCX searcher) {
+            for (int i; (i = next.getAndIncrement()) < moves.length; ) {
+                if (!stopped && !searcher.isAborted()
+                        && searcher.attack(role, depth, moves[i], maxPoints[i], maxPointScores[i])) {
+                    report(moves[i]);
+                }
+                finish();
+                if (searcher.aborted) return;
+            }
+        }
+
+        private synchronized void report(int move) {
+            if (winMove != -1) return;
+            winMove = move;
+            stopAll();
+            notifyAll();
+        }
+
+        private void stopAll() {
+            stopped = true;
+            for (VCX searcher : searchers) searcher.stop();
+        }
+
+        private synchronized void finish() {
+            if (++finished == moves.length) notifyAll();
+        }
+    }
+}
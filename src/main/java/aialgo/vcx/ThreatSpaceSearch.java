@@ -0,0 +1,503 @@
+package aialgo.vcx;
+
+import aialgo.IWinningAlgo;
+import chessboardalgo.IChessboardAIAlgo;
+import common.Position;
+import common.SearchBudget;
+import lombok.Getter;
+import lombok.Setter;
+import scorecalculator.IScoreManager;
+import zobrist.Zobrist;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// 基于依赖关系的威胁空间搜索 (Allis, threat-space search)
+// 进攻方只走能形成威胁的点（冲四、活三），威胁都按所在的线单独分析：这条线上哪些空位能让威胁消失就是防点
+// 放宽模型里防守方把防点一次全下上，进攻方只沿着依赖前面进攻子的威胁继续走，不用在防守方上分叉
+// 放宽模型忽略了防守方的反冲四，所以放宽后能赢的着法还要在真实的与或树里验证：
+// 防守方逐个尝试每个防点和每个能冲四的点，验证通过才算必胜
+// 没有 Allis 的合并阶段：放宽模型只沿着依赖链扩展，只用来决定先验证哪些着法；
+// 真实搜索每层都生成全部威胁，两组独立威胁合起来的杀法靠真实搜索在第二轮里找到
+public class ThreatSpaceSearch implements IWinningAlgo {
+    private static final int NONE = 0, THREE = 1, FOUR = 2, WIN = 3;
+    // 生成威胁的范围
+    private static final int ALL = 0, DEPENDENT = 1;
+    private static final int[] DY = {0, 1, 1, 1}, DX = {1, 0, 1, -1};
+    // 分析窗口：中心点两侧各 6 格，1 己方 0 空 -1 对方或出界
+    private static final int R = 6, W = 2 * R + 1;
+    private static final int PROVEN_WIN = Integer.MAX_VALUE;
+
+    @Getter
+    private final IChessboardAIAlgo chessboardAlgo;
+    @Getter
+    private final int humanColor;
+    private final int aiColor, size, firstDepth;
+    private final int[] cells;
+    private final long[] keys;
+    private long hash;
+    // 这次搜索里进攻方新下的子，根节点以下的威胁要依赖其中之一
+    private final boolean[] gain;
+    private final int[] gainList;
+    private int gainCnt;
+    private final int[] visited;
+    private int visitStamp;
+    private final int[] window = new int[W];
+    private final int[] scratch = new int[W];
+    // 真实搜索：局面 ^ 跟踪的威胁 -> 必胜记 PROVEN_WIN，否则是已证明赢不了的最大深度
+    private final Map<Long, Integer> proofCache = new HashMap<>();
+    // 放宽搜索：局面 ^ 放宽搜索起点 -> 已证明找不到威胁序列的最大步数
+    private final Map<Long, Integer> relaxedCache = new HashMap<>();
+    private long relaxedSalt;
+    private int relaxedNodes;
+    // 一次放宽搜索的节点上限，超出时不剪这个着法，交给真实搜索判断
+    @Setter
+    private int relaxedNodeLimit = 4000;
+    private int[][] moveBuffers = new int[0][], relaxedMoveBuffers = new int[0][], defenseBuffers = new int[0][];
+    private int rootDepth, nextPoint;
+    @Setter
+    private long timeLimitMs = 55_000;
+    @Setter
+    private SearchBudget parentBudget = null;
+    private SearchBudget budget;
+    private boolean aborted;
+    @Getter
+    private long nodeCount;
+
+    public ThreatSpaceSearch(IChessboardAIAlgo chessBoardAlgo, int humanColor) {
+        this(chessBoardAlgo, humanColor, 23);
+    }
+
+    public ThreatSpaceSearch(IChessboardAIAlgo chessBoardAlgo, int humanColor, int firstDepth) {
+        if (humanColor != 1 && humanColor != 2) throw new IllegalArgumentException("Invalid color " + humanColor);
+        this.chessboardAlgo = chessBoardAlgo;
+        this.humanColor = humanColor;
+        this.aiColor = 3 - humanColor;
+        this.firstDepth = firstDepth;
+        this.size = chessBoardAlgo.getSize();
+        this.keys = Zobrist.keys(size);
+        cells = new int[size * size];
+        gain = new boolean[size * size];
+        gainList = new int[size * size];
+        visited = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int val = chessBoardAlgo.getValInBoard(x, y);
+                if (val != 0) place(y * size + x, val);
+            }
+        }
+    }
+
+    @Override
+    public boolean isAbsoluteForcedWin() {
+        return true;
+    }
+
+    // 直接在棋盘上分析棋型，不需要评分
+    @Override
+    public IScoreManager getScoreManager() {
+        return null;
+    }
+
+    @Override
+    public void setPieceCallBack(int y, int x, int player, boolean isAI) {
+        int idx = y * size + x;
+        if (cells[idx] != 0) remove(idx);
+        int val = chessboardAlgo.getValInBoard(x, y);
+        if (val != 0) place(idx, val);
+    }
+
+    @Override
+    public Position aiFindPos() {
+        nextPoint = -1;
+        aborted = false;
+        nodeCount = 0;
+        budget = SearchBudget.child(parentBudget, timeLimitMs, SearchBudget.NO_LIMIT);
+        // 和 VCX 共用进程内的根节点结论缓存
+        long sharedKey = VCXResultCache.threatSpaceKey(hash, aiColor);
+        int sharedCheck = VCXResultCache.enabled ? VCXResultCache.check(chessboardAlgo) : 0;
+        if (VCXResultCache.enabled) {
+            long cached = VCXResultCache.SHARED.probe(sharedKey, sharedCheck, firstDepth);
+            if (cached != VCXResultCache.MISS) {
+                if (!VCXResultCache.isWin(cached)) return Position.EMPTY;
+                int move = VCXResultCache.move(cached);
+                if (cells[move] == 0) return new Position(move / size, move % size, true);
+            }
+        }
+        proofCache.clear();
+        relaxedCache.clear();
+        // 和 VCX 一样迭代加深，浅的杀先找到
+        int completedDepth = 0;
+        for (int depth = Math.max(firstDepth - 16, Math.min(5, firstDepth)); ; depth = Math.min(depth + 4, firstDepth)) {
+            rootDepth = depth;
+            if (attackerWin(depth, -1) || aborted) break;
+            completedDepth = depth;
+            if (depth == firstDepth) break;
+        }
+        if (VCXResultCache.enabled) {
+            if (nextPoint != -1) VCXResultCache.SHARED.storeWin(sharedKey, sharedCheck, nextPoint);
+            else if (completedDepth > 0) VCXResultCache.SHARED.storeLose(sharedKey, sharedCheck, completedDepth);
+        }
+        if (nextPoint == -1) return Position.EMPTY;
+        return new Position(nextPoint / size, nextPoint % size, true);
+    }
+
+    // lastThreat: 进攻方上一个威胁，防守方反冲四之后它可能还在
+    private boolean attackerWin(int depth, int lastThreat) {
+        boolean root = depth == rootDepth;
+        long key = proofKey(lastThreat);
+        if (!root) {
+            Boolean cached = getCached(key, depth);
+            if (cached != null) return cached;
+        }
+        if (isAborted()) return false;
+        int[] moves = moveBuffer(depth);
+        if (collectFives(aiColor, moves, 1) > 0) {
+            if (root) nextPoint = moves[0];
+            return setAndReturn(key, true, depth);
+        }
+        int enemyFives = collectFives(humanColor, moves, 2);
+        if (enemyFives > 1 || depth <= 0) return setAndReturn(key, false, depth);
+        int cnt, threat = -1;
+        if (enemyFives == 1) {
+            // 只能先挡对方的四，挡完自己还得有威胁：要么挡的这一步本身是威胁，要么之前的威胁没被反冲四化解
+            threat = moves[0];
+            if (type(classify(threat, aiColor, scratch)) == NONE) {
+                if (lastThreat == -1 || type(classify(lastThreat, aiColor, scratch)) == NONE)
+                    return setAndReturn(key, false, depth);
+                threat = lastThreat;
+            }
+            cnt = 1;
+        } else {
+            // 真实搜索每层都生成全部威胁，不要求依赖之前的进攻子：
+            // 和前面威胁互不相干的另一组威胁也要能接着走，两组独立威胁合起来的杀法才找得到
+            cnt = generateThreats(aiColor, moves, ALL);
+        }
+        // 第一轮先验证放宽模型里能赢的威胁，第二轮再试其余的
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < cnt; i++) {
+                if (moves[i] == -1) continue;
+                int move = moves[i] & 0xffff;
+                if (pass == 0 && enemyFives == 0 && moves[i] >>> 29 != WIN && !relaxedWin(move, (depth + 1) / 2))
+                    continue;
+                moves[i] = -1;
+                placeGain(move);
+                boolean win = defenderLose(depth - 1, threat == -1 ? move : threat);
+                removeGain(move);
+                if (aborted) return false;
+                if (win) {
+                    if (root) nextPoint = move;
+                    return setAndReturn(key, true, depth);
+                }
+            }
+        }
+        return setAndReturn(key, false, depth);
+    }
+
+    private boolean defenderLose(int depth, int threat) {
+        long key = proofKey(threat);
+        Boolean cached = getCached(key, depth);
+        if (cached != null) return cached;
+        if (isAborted()) return false;
+        int[] moves = moveBuffer(depth);
+        if (collectFives(humanColor, moves, 1) > 0) return setAndReturn(key, false, depth);
+        int aiFives = collectFives(aiColor, moves, 2);
+        if (aiFives > 1) return setAndReturn(key, true, depth);
+        int cnt = aiFives;
+        if (aiFives == 0) {
+            int type = type(classify(threat, aiColor, moves));
+            // 已经不是威胁了，防守方可以脱先
+            if (type == NONE) return setAndReturn(key, false, depth);
+            cnt = type == WIN ? 0 : moves[0];
+            System.arraycopy(moves, 1, moves, 0, cnt);
+            // 除了防点，防守方还可以先冲四抢先手
+            cnt = appendFours(humanColor, moves, cnt);
+            if (cnt == 0) return setAndReturn(key, true, depth);
+        }
+        if (depth <= 0) return setAndReturn(key, false, depth);
+        for (int i = 0; i < cnt; i++) {
+            place(moves[i], humanColor);
+            boolean win = attackerWin(depth - 1, threat);
+            remove(moves[i]);
+            if (aborted) return false;
+            if (!win) return setAndReturn(key, false, depth);
+        }
+        return setAndReturn(key, true, depth);
+    }
+
+    private boolean relaxedWin(int move, int movesLeft) {
+        relaxedSalt = Long.rotateLeft(hash, 17) * 0x9E3779B97F4A7C15L;
+        relaxedNodes = 0;
+        return relaxedPlay(move, movesLeft, 0);
+    }
+
+    // 放宽模型：进攻方下威胁，防守方把这条线上的防点全部占上
+    private boolean relaxedPlay(int move, int movesLeft, int level) {
+        int[] defenses = defenseBuffer(level);
+        int type = type(classify(move, aiColor, defenses));
+        if (type == WIN) return true;
+        if (type == NONE || movesLeft <= 1) return false;
+        placeGain(move);
+        int defenseCnt = defenses[0];
+        for (int i = 1; i <= defenseCnt; i++) place(defenses[i], humanColor);
+        boolean win = relaxedSearch(movesLeft - 1, level + 1);
+        for (int i = 1; i <= defenseCnt; i++) remove(defenses[i]);
+        removeGain(move);
+        return win;
+    }
+
+    private boolean relaxedSearch(int movesLeft, int level) {
+        long key = hash ^ relaxedSalt;
+        Integer failed = relaxedCache.get(key);
+        if (failed != null && failed >= movesLeft) return false;
+        if (++relaxedNodes > relaxedNodeLimit || isAborted()) return true;
+        int[] moves = relaxedMoveBuffer(level);
+        int cnt = generateThreats(aiColor, moves, DEPENDENT);
+        for (int i = 0; i < cnt; i++) {
+            if (relaxedPlay(moves[i] & 0xffff, movesLeft, level)) return true;
+        }
+        if (relaxedNodes <= relaxedNodeLimit) relaxedCache.put(key, movesLeft);
+        return false;
+    }
+
+    // 返回 (类型 << 29 | 周围己方子数 << 24 | 位置)，按威胁类型和周围己方子数从大到小排
+    private int generateThreats(int color, int[] out, int scope) {
+        int cnt = 0;
+        visitStamp++;
+        if (scope != DEPENDENT) {
+            for (int idx = 0; idx < cells.length; idx++) {
+                if (cells[idx] == 0) cnt = addThreat(idx, color, out, cnt, scope);
+            }
+        } else {
+            for (int g = 0; g < gainCnt; g++) {
+                int gy = gainList[g] / size, gx = gainList[g] % size;
+                for (int d = 0; d < 4; d++) {
+                    for (int k = -4; k <= 4; k++) {
+                        int y = gy + k * DY[d], x = gx + k * DX[d];
+                        if (y < 0 || x < 0 || y >= size || x >= size) continue;
+                        int idx = y * size + x;
+                        if (cells[idx] != 0 || visited[idx] == visitStamp) continue;
+                        visited[idx] = visitStamp;
+                        cnt = addThreat(idx, color, out, cnt, scope);
+                    }
+                }
+            }
+        }
+        Arrays.sort(out, 0, cnt);
+        for (int i = 0, j = cnt - 1; i < j; i++, j--) {
+            int t = out[i];
+            out[i] = out[j];
+            out[j] = t;
+        }
+        return cnt;
+    }
+
+    private int addThreat(int idx, int color, int[] out, int cnt, int scope) {
+        int info = classify(idx, color, scratch);
+        int type = type(info);
+        if (type == NONE) return cnt;
+        // 威胁所在的线上要有这次搜索里新下的进攻子
+        boolean dependent = (info >>> 2 & info >>> 6 & 0xf) != 0;
+        if (scope == DEPENDENT && !dependent) return cnt;
+        out[cnt] = type << 29 | Math.min(info >>> 10, 0x1f) << 24 | idx;
+        return cnt + 1;
+    }
+
+    private static int type(int info) {
+        return info & 3;
+    }
+
+    // 假设 color 下在 idx，返回 类型 | 威胁线 << 2 | 有依赖子的线 << 6 | 周围己方子数 << 10
+    // 只有一条威胁线时 defenses 里放防点 (defenses[0] 是个数)，没有防点说明防不住，算作 WIN
+    private int classify(int idx, int color, int[] defenses) {
+        int y = idx / size, x = idx % size;
+        int type = NONE, lines = 0, threatMask = 0, gainMask = 0, weight = 0;
+        defenses[0] = 0;
+        for (int d = 0; d < 4; d++) {
+            int own = loadWindow(y, x, d, color);
+            weight += own & 0xff;
+            if ((own & 0xff) < 2) continue;
+            int t = lineThreat();
+            if (t == NONE) continue;
+            threatMask |= 1 << d;
+            if ((own & 0x100) != 0) gainMask |= 1 << d;
+            if (++lines > 1 || t == WIN) {
+                type = WIN;
+                continue;
+            }
+            type = t;
+            int cnt = 0;
+            for (int i = R - 4; i <= R + 4; i++) {
+                if (window[i] != 0) continue;
+                window[i] = -1;
+                if (lineThreat() == NONE) defenses[++cnt] = idx + (i - R) * (DY[d] * size + DX[d]);
+                window[i] = 0;
+            }
+            defenses[0] = cnt;
+            if (cnt == 0) type = WIN;
+        }
+        if (type == WIN) defenses[0] = 0;
+        return type | threatMask << 2 | gainMask << 6 | weight << 10;
+    }
+
+    // 填好窗口，中心视为己方；返回中心两侧 4 格内的己方子数，第 8 位表示其中有放宽搜索新下的子
+    private int loadWindow(int y, int x, int d, int color) {
+        int own = 0;
+        for (int i = 0; i < W; i++) {
+            int ny = y + (i - R) * DY[d], nx = x + (i - R) * DX[d];
+            if (ny < 0 || nx < 0 || ny >= size || nx >= size) {
+                window[i] = -1;
+                continue;
+            }
+            int val = cells[ny * size + nx];
+            window[i] = val == 0 ? 0 : val == color ? 1 : -1;
+            if (val == color && i != R && i >= R - 4 && i <= R + 4) {
+                own++;
+                if (gain[ny * size + nx]) own |= 0x100;
+            }
+        }
+        window[R] = 1;
+        return own;
+    }
+
+    private int lineThreat() {
+        int fives = countFives();
+        if (fives >= 2) return WIN;
+        if (fives == 1) return FOUR;
+        // 再下一手能变成活四（两个成五点）就是活三
+        for (int i = R - 4; i <= R + 4; i++) {
+            if (window[i] != 0) continue;
+            window[i] = 1;
+            int f = countFives();
+            window[i] = 0;
+            if (f >= 2) return THREE;
+        }
+        return NONE;
+    }
+
+    // 落下后能连成经过中心的五连（长连也算）的空位个数
+    private int countFives() {
+        int cnt = 0;
+        for (int i = R - 4; i <= R + 4; i++) {
+            if (window[i] != 0) continue;
+            int l = i, r = i;
+            while (l > 0 && window[l - 1] == 1) l--;
+            while (r < W - 1 && window[r + 1] == 1) r++;
+            if (r - l >= 4 && l <= R && r >= R) cnt++;
+        }
+        return cnt;
+    }
+
+    // 全盘找 color 的成五点，最多找 limit 个
+    private int collectFives(int color, int[] out, int limit) {
+        int cnt = 0;
+        for (int idx = 0; idx < cells.length && cnt < limit; idx++) {
+            if (cells[idx] == 0 && makesFive(idx, color)) out[cnt++] = idx;
+        }
+        return cnt;
+    }
+
+    private boolean makesFive(int idx, int color) {
+        int y = idx / size, x = idx % size;
+        for (int d = 0; d < 4; d++) {
+            int len = 1 + run(y, x, DY[d], DX[d], color) + run(y, x, -DY[d], -DX[d], color);
+            if (len >= 5) return true;
+        }
+        return false;
+    }
+
+    private int run(int y, int x, int dy, int dx, int color) {
+        int len = 0;
+        for (int ny = y + dy, nx = x + dx; ny >= 0 && nx >= 0 && ny < size && nx < size
+                && cells[ny * size + nx] == color; ny += dy, nx += dx) {
+            len++;
+        }
+        return len;
+    }
+
+    // 把 color 所有能冲四的空位追加到 out 里已有的着法之后
+    private int appendFours(int color, int[] out, int cnt) {
+        int existing = cnt;
+        for (int idx = 0; idx < cells.length; idx++) {
+            if (cells[idx] != 0 || !makesFour(idx, color)) continue;
+            boolean dup = false;
+            for (int i = 0; i < existing && !dup; i++) dup = out[i] == idx;
+            if (!dup) out[cnt++] = idx;
+        }
+        return cnt;
+    }
+
+    private boolean makesFour(int idx, int color) {
+        int y = idx / size, x = idx % size;
+        for (int d = 0; d < 4; d++) {
+            if ((loadWindow(y, x, d, color) & 0xff) >= 3 && countFives() > 0) return true;
+        }
+        return false;
+    }
+
+    private void placeGain(int move) {
+        place(move, aiColor);
+        gain[move] = true;
+        gainList[gainCnt++] = move;
+    }
+
+    private void removeGain(int move) {
+        gainCnt--;
+        gain[move] = false;
+        remove(move);
+    }
+
+    private void place(int idx, int color) {
+        cells[idx] = color;
+        hash ^= keys[(idx << 1) + color - 1];
+    }
+
+    private void remove(int idx) {
+        hash ^= keys[(idx << 1) + cells[idx] - 1];
+        cells[idx] = 0;
+    }
+
+    private boolean isAborted() {
+        if ((++nodeCount & SearchBudget.CHECK_MASK) == 0
+                && (Thread.currentThread().isInterrupted() || budget.consume(SearchBudget.CHECK_INTERVAL))) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    // 结论和局面以及要跟踪的威胁有关，同一个局面跟踪不同的威胁是不同的条目
+    private long proofKey(int threat) {
+        return hash ^ (threat + 1) * 0x9E3779B97F4A7C15L;
+    }
+
+    private Boolean getCached(long key, int depth) {
+        Integer cached = proofCache.get(key);
+        if (cached == null) return null;
+        if (cached == PROVEN_WIN) return true;
+        return cached >= depth ? false : null;
+    }
+
+    private boolean setAndReturn(long key, boolean res, int depth) {
+        if (!aborted) proofCache.merge(key, res ? PROVEN_WIN : Math.max(depth, 0), Math::max);
+        return res;
+    }
+
+    private int[] moveBuffer(int depth) {
+        if (moveBuffers.length <= depth) moveBuffers = Arrays.copyOf(moveBuffers, Math.max(depth, firstDepth) + 1);
+        if (moveBuffers[depth] == null) moveBuffers[depth] = new int[size * size + 1];
+        return moveBuffers[depth];
+    }
+
+    private int[] relaxedMoveBuffer(int level) {
+        if (relaxedMoveBuffers.length <= level) relaxedMoveBuffers = Arrays.copyOf(relaxedMoveBuffers, level + 8);
+        if (relaxedMoveBuffers[level] == null) relaxedMoveBuffers[level] = new int[size * size];
+        return relaxedMoveBuffers[level];
+    }
+
+    private int[] defenseBuffer(int level) {
+        if (defenseBuffers.length <= level) defenseBuffers = Arrays.copyOf(defenseBuffers, level + 8);
+        if (defenseBuffers[level] == null) defenseBuffers[level] = new int[W + 1];
+        return defenseBuffers[level];
+    }
+}
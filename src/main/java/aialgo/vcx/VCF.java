@@ -0,0 +1,317 @@
+package aialgo.vcx;
+
+import aialgo.IWinningAlgo;
+import chessboardalgo.IChessboardAIAlgo;
+import common.Position;
+import common.SearchBudget;
+import lombok.Getter;
+import lombok.Setter;
+import scorecalculator.IScoreManager;
+import zobrist.Zobrist;
+
+import java.util.Arrays;
+
+// 只用连续冲四的算杀 (VCF)
+// 进攻方只走能冲四的点，防守方只能挡在唯一的成五点上，不用在防守方上分叉；
+// 防守方挡的同时形成反冲四时，进攻方只能去挡，挡的这一步本身也必须是冲四
+public class VCF implements IWinningAlgo {
+    private static final int[] DY = {0, 1, 1, 1}, DX = {1, 0, 1, -1};
+
+    @Getter
+    private final IChessboardAIAlgo chessboardAlgo;
+    @Getter
+    private final int humanColor;
+    private final int aiColor, size, firstDepth;
+    private final int[] cells;
+    private final long[] keys;
+    private long hash;
+    // 所有层共用一个着法栈，每层占用 [进入时的 top, top + 个数)
+    private int[] moveStack;
+    private int top;
+    // 已证明 VCF 不成立的局面，和 VCX 一样记下证明时的剩余深度
+    // 大多数调用在根节点就没有冲四，第一次记失败时才按深度分配
+    private FailedSet failed;
+    private int nextPoint;
+    @Setter
+    private long timeLimitMs = 10_000;
+    @Setter
+    private SearchBudget parentBudget = null;
+    private SearchBudget budget;
+    private boolean aborted;
+    @Getter
+    private long nodeCount;
+
+    public VCF(IChessboardAIAlgo chessBoardAlgo, int humanColor) {
+        this(chessBoardAlgo, humanColor, 31);
+    }
+
+    // depth 和 VCX 一样按双方落子的总步数计
+    public VCF(IChessboardAIAlgo chessBoardAlgo, int humanColor, int firstDepth) {
+        if (humanColor != 1 && humanColor != 2) throw new IllegalArgumentException("Invalid color " + humanColor);
+        this.chessboardAlgo = chessBoardAlgo;
+        this.humanColor = humanColor;
+        this.aiColor = 3 - humanColor;
+        this.firstDepth = firstDepth;
+        this.size = chessBoardAlgo.getSize();
+        this.keys = Zobrist.keys(size);
+        cells = new int[size * size];
+        moveStack = new int[size * size * 2];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int val = chessBoardAlgo.getValInBoard(x, y);
+                if (val != 0) place(y * size + x, val);
+            }
+        }
+    }
+
+    @Override
+    public boolean isAbsoluteForcedWin() {
+        return true;
+    }
+
+    // 直接在棋盘上判断成五和冲四，不需要评分
+    @Override
+    public IScoreManager getScoreManager() {
+        return null;
+    }
+
+    @Override
+    public void setPieceCallBack(int y, int x, int player, boolean isAI) {
+        int idx = y * size + x;
+        if (cells[idx] != 0) remove(idx);
+        int val = chessboardAlgo.getValInBoard(x, y);
+        if (val != 0) place(idx, val);
+    }
+
+    @Override
+    public Position aiFindPos() {
+        nextPoint = -1;
+        aborted = false;
+        nodeCount = 0;
+        top = 0;
+        budget = SearchBudget.child(parentBudget, timeLimitMs, SearchBudget.NO_LIMIT);
+        // 和 VCX 共用进程内的根节点结论缓存
+        long sharedKey = VCXResultCache.vcfKey(hash, aiColor);
+        int sharedCheck = VCXResultCache.enabled ? VCXResultCache.check(chessboardAlgo) : 0;
+        if (VCXResultCache.enabled) {
+            long cached = VCXResultCache.SHARED.probe(sharedKey, sharedCheck, firstDepth);
+            if (cached != VCXResultCache.MISS) {
+                if (!VCXResultCache.isWin(cached)) return Position.EMPTY;
+                int move = VCXResultCache.move(cached);
+                if (cells[move] == 0) return new Position(move / size, move % size, true);
+            }
+        }
+        attackerWin(firstDepth, true);
+        if (VCXResultCache.enabled) {
+            if (nextPoint != -1) VCXResultCache.SHARED.storeWin(sharedKey, sharedCheck, nextPoint);
+            else if (!aborted) VCXResultCache.SHARED.storeLose(sharedKey, sharedCheck, firstDepth);
+        }
+        if (nextPoint == -1) return Position.EMPTY;
+        return new Position(nextPoint / size, nextPoint % size, true);
+    }
+
+    private boolean attackerWin(int depth, boolean root) {
+        if (!root && failed != null && failed.contains(hash, depth)) return false;
+        if (isAborted()) return false;
+        int base = top;
+        ensureCapacity(base + size * size);
+        int five = findFive(aiColor);
+        if (five != -1) {
+            if (root) nextPoint = five;
+            return true;
+        }
+        if (depth <= 0) return setFailed(depth);
+        int cnt;
+        int enemyFives = collectFives(humanColor, base);
+        if (enemyFives > 1) return setFailed(depth);
+        if (enemyFives == 1) {
+            // 只能挡对方的四，挡的这一步不是冲四就断了
+            if (!makesFour(moveStack[base], aiColor)) return setFailed(depth);
+            cnt = 1;
+        } else {
+            cnt = collectFours(aiColor, base);
+        }
+        top = base + cnt;
+        boolean win = false;
+        for (int i = base; i < base + cnt && !win; i++) {
+            int move = moveStack[i];
+            place(move, aiColor);
+            int block = fivesThrough(move, aiColor);
+            // 两个成五点（活四或双四）挡不住
+            if (block == -2) {
+                win = true;
+            } else {
+                place(block, humanColor);
+                win = attackerWin(depth - 2, false);
+                remove(block);
+            }
+            remove(move);
+            if (win && root) nextPoint = move;
+        }
+        top = base;
+        if (aborted) return false;
+        return win || setFailed(depth);
+    }
+
+    private boolean setFailed(int depth) {
+        if (aborted) return false;
+        // 防守方只有唯一的挡点，失败的局面不多，按深度给几千个槽；满了会覆盖，丢的只是失败结论
+        if (failed == null) failed = new FailedSet(Math.min(1 << 12, Integer.highestOneBit(Math.max(firstDepth, 1)) << 7));
+        failed.add(hash, Math.max(depth, 0));
+        return false;
+    }
+
+    // 全盘找 color 的一个成五点，没有返回 -1
+    private int findFive(int color) {
+        for (int idx = 0; idx < cells.length; idx++) {
+            if (cells[idx] == 0 && makesFive(idx, color)) return idx;
+        }
+        return -1;
+    }
+
+    // 把 color 的成五点压栈，最多两个
+    private int collectFives(int color, int base) {
+        int cnt = 0;
+        for (int idx = 0; idx < cells.length && cnt < 2; idx++) {
+            if (cells[idx] == 0 && makesFive(idx, color)) moveStack[base + cnt++] = idx;
+        }
+        return cnt;
+    }
+
+    // 把 color 所有能冲四的点压栈，能同时形成两个成五点的排在前面
+    private int collectFours(int color, int base) {
+        int cnt = 0, doubles = 0;
+        for (int idx = 0; idx < cells.length; idx++) {
+            if (cells[idx] != 0 || !hasThreeNearby(idx, color)) continue;
+            cells[idx] = color;
+            int fives = fivesThrough(idx, color);
+            cells[idx] = 0;
+            if (fives == -1) continue;
+            if (fives == -2) {
+                moveStack[base + cnt] = moveStack[base + doubles];
+                moveStack[base + doubles++] = idx;
+            } else {
+                moveStack[base + cnt] = idx;
+            }
+            cnt++;
+        }
+        return cnt;
+    }
+
+    private boolean makesFour(int idx, int color) {
+        cells[idx] = color;
+        boolean four = fivesThrough(idx, color) != -1;
+        cells[idx] = 0;
+        return four;
+    }
+
+    // idx 已经是 color：返回经过 idx 的线上唯一的成五点，没有返回 -1，两个及以上返回 -2
+    private int fivesThrough(int idx, int color) {
+        int y = idx / size, x = idx % size, found = -1;
+        for (int d = 0; d < 4; d++) {
+            for (int k = -4; k <= 4; k++) {
+                int ny = y + k * DY[d], nx = x + k * DX[d];
+                if (k == 0 || ny < 0 || nx < 0 || ny >= size || nx >= size) continue;
+                int p = ny * size + nx;
+                if (cells[p] != 0 || p == found || !makesFive(p, color)) continue;
+                if (found != -1) return -2;
+                found = p;
+            }
+        }
+        return found;
+    }
+
+    // 某条线上 idx 两侧 4 格内至少有 3 个己方子，才可能冲四
+    private boolean hasThreeNearby(int idx, int color) {
+        int y = idx / size, x = idx % size;
+        for (int d = 0; d < 4; d++) {
+            int own = 0;
+            for (int k = -4; k <= 4; k++) {
+                int ny = y + k * DY[d], nx = x + k * DX[d];
+                if (k != 0 && ny >= 0 && nx >= 0 && ny < size && nx < size && cells[ny * size + nx] == color) own++;
+            }
+            if (own >= 3) return true;
+        }
+        return false;
+    }
+
+    private boolean makesFive(int idx, int color) {
+        int y = idx / size, x = idx % size;
+        for (int d = 0; d < 4; d++) {
+            int len = 1 + run(y, x, DY[d], DX[d], color) + run(y, x, -DY[d], -DX[d], color);
+            if (len >= 5) return true;
+        }
+        return false;
+    }
+
+    private int run(int y, int x, int dy, int dx, int color) {
+        int len = 0;
+        for (int ny = y + dy, nx = x + dx; ny >= 0 && nx >= 0 && ny < size && nx < size
+                && cells[ny * size + nx] == color; ny += dy, nx += dx) {
+            len++;
+        }
+        return len;
+    }
+
+    private void place(int idx, int color) {
+        cells[idx] = color;
+        hash ^= keys[(idx << 1) + color - 1];
+    }
+
+    private void remove(int idx) {
+        hash ^= keys[(idx << 1) + cells[idx] - 1];
+        cells[idx] = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (moveStack.length < capacity) moveStack = Arrays.copyOf(moveStack, Math.max(capacity, moveStack.length * 2));
+    }
+
+    private boolean isAborted() {
+        if ((++nodeCount & SearchBudget.CHECK_MASK) == 0
+                && (Thread.currentThread().isInterrupted() || budget.consume(SearchBudget.CHECK_INTERVAL))) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    // 开放寻址的 hash 集合，key 和剩余深度放在同一个 long 里：高 56 位 key，低 8 位深度
+    // 探测 8 个槽还没位置时直接覆盖第一个槽，丢掉的只是一个失败结论
+    private static final class FailedSet {
+        private static final int PROBES = 8;
+        private final long[] slots;
+        private final int mask;
+
+        FailedSet(int capacity) {
+            slots = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        boolean contains(long hash, int depth) {
+            long key = hash & ~0xffL;
+            for (int i = 0, idx = index(hash); i < PROBES; i++, idx = (idx + 1) & mask) {
+                long slot = slots[idx];
+                if (slot == 0) return false;
+                if ((slot & ~0xffL) == key) return (slot & 0xff) >= depth;
+            }
+            return false;
+        }
+
+        void add(long hash, int depth) {
+            long key = hash & ~0xffL, entry = key | Math.min(depth, 0xff);
+            int first = index(hash);
+            for (int i = 0, idx = first; i < PROBES; i++, idx = (idx + 1) & mask) {
+                long slot = slots[idx];
+                if (slot == 0 || (slot & ~0xffL) == key) {
+                    if ((slot & 0xff) <= depth) slots[idx] = entry;
+                    return;
+                }
+            }
+            slots[first] = entry;
+        }
+
+        private int index(long hash) {
+            return (int) (hash >>> 40) & mask;
+        }
+    }
+}
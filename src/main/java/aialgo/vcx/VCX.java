@@ -2,18 +2,19 @@ package aialgo.vcx;
 
 import aialgo.IWinningAlgo;
 import aialgo.RecursiveBaseAIAlgo;
+import aialgo.WinningAlgoFactory;
 import chessboardalgo.IChessboardAIAlgo;
 import common.DebugContext;
 import common.Position;
+import common.SearchBudget;
 import common.ThreadPoolContext;
 import lombok.Setter;
 import player.Player;
 import scorecalculator.Score;
 import scorecalculator.VCXCachedScoreManager;
+import zobrist.Zobrist;
 
-import java.security.SecureRandom;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
@@ -23,18 +24,59 @@ import static scorecalculator.VCXCachedScoreManager.score;
 
 public class VCX extends RecursiveBaseAIAlgo implements IWinningAlgo {
 
-    private final int TIME_LIMIT_MS = 55_000;
-    private int nextPoint = -1;
-    private final long[] zobristTable;
-    private long hash = 0;
+    // 每次 aiFindPos 在 parentBudget 下开一个子预算
+    @Setter
+    private long timeLimitMs = 55_000;
+    @Setter
+    private long nodeLimit = SearchBudget.NO_LIMIT;
+    @Setter
+    private SearchBudget parentBudget = null;
+    SearchBudget budget = SearchBudget.unlimited();
+    int nextPoint = -1;
+    // 只用来算 hash，不带置换表；对称模式下同样取 8 种对称里最小的 hash
+    private final Zobrist hasher;
     private long startTime = 0;
-    private Map<Long, Boolean> zobristCache;
-    private int firstDepth;
+    // 局面 -> 结论，跨迭代加深的各轮以及多次 aiFindPos 保留
+    // 值: 代数 << 16 | 剩余深度，能赢记为 WIN（和深度无关）；输只在剩余深度不超过记录的深度时可信
+    private final Map<Long, Integer> zobristCache;
+    private static final int WIN = 0xffff, MAX_CACHE_SIZE = 1 << 20;
+    // 缓存太大时保留最近这么多代（次 aiFindPos）的条目
+    private static final int KEEP_GENERATIONS = 2;
+    private int generation = 0;
+    // 超时或被中断后的结论不可信，不写入缓存
+    boolean aborted = false;
+    private int checkCounter = 0;
+    private volatile boolean stopRequested = false;
+    int firstDepth;
     private int timeFactor;
+    private final VCXOptimization killOptimization;
     private VCXCachedScoreManager vcxCachedScoreManager;
+    // 每层一份候选点 buffer，避免搜索中反复分配
+    private long[][] candidateBuffers;
 
     @Setter
-    private DebugContext debugContext = DebugContext.DISABLE;
+    DebugContext debugContext = DebugContext.DISABLE;
+    // 只需要 aiFindPos 结论的地方都通过它创建，可以换成 ThreatSpaceSearch::new
+    public static WinningAlgoFactory defaultFactory = VCX::new;
+
+    public static IWinningAlgo create(IChessboardAIAlgo chessBoardAlgo, int humanColor, int depth) {
+        return defaultFactory.create(chessBoardAlgo, humanColor, depth);
+    }
+
+    // 先用 VCF 试，连续冲四就能赢时不用再跑完整的 VCX；board 会被 VCX 修改，调用方自己 clone
+    public static Position findWin(IChessboardAIAlgo chessBoardAlgo, int humanColor, int depth) {
+        return findWin(chessBoardAlgo, humanColor, depth, null);
+    }
+
+    public static Position findWin(IChessboardAIAlgo chessBoardAlgo, int humanColor, int depth, SearchBudget parentBudget) {
+        VCF vcf = new VCF(chessBoardAlgo, humanColor, depth);
+        vcf.setParentBudget(parentBudget);
+        Position pos = vcf.aiFindPos();
+        if (pos != Position.EMPTY) return pos;
+        IWinningAlgo vcx = create(chessBoardAlgo, humanColor, depth);
+        vcx.setParentBudget(parentBudget);
+        return vcx.aiFindPos();
+    }
 
     public VCX(IChessboardAIAlgo chessBoardAlgo, int humanColor) {
         this(chessBoardAlgo, humanColor, 23, VCXOptimization.FAST);
@@ -43,14 +85,19 @@ public class VCX extends RecursiveBaseAIAlgo implements IWinningAlgo {
         this(chessBoardAlgo, humanColor, firstDepth, VCXOptimization.FAST);
     }
     public VCX(IChessboardAIAlgo chessBoardAlgo, int humanColor, int firstDepth, VCXOptimization killOptimization) {
+        this(chessBoardAlgo, humanColor, firstDepth, killOptimization, new HashMap<>());
+    }
+
+    // 并行时多个实例传入同一个并发 map 共用局面缓存
+    protected VCX(IChessboardAIAlgo chessBoardAlgo, int humanColor, int firstDepth, VCXOptimization killOptimization,
+                  Map<Long, Integer> zobristCache) {
         super(chessBoardAlgo, new VCXCachedScoreManager(chessBoardAlgo, humanColor, killOptimization), humanColor);
         this.vcxCachedScoreManager = (VCXCachedScoreManager) scoreManager;
         this.firstDepth = firstDepth;
         this.timeFactor = killOptimization.factor;
-        zobristTable = new long[size * size * 2];
-        SecureRandom secureRandom = new SecureRandom();
-        for (int i = 0; i < zobristTable.length; i++)
-            zobristTable[i] = secureRandom.nextLong();
+        this.killOptimization = killOptimization;
+        hasher = new Zobrist(chessBoardAlgo, null);
+        this.zobristCache = zobristCache;
     }
 
     @Override
@@ -61,16 +108,45 @@ public class VCX extends RecursiveBaseAIAlgo implements IWinningAlgo {
     @Override
     public Position aiFindPos() {
         nextPoint = -1;
+        aborted = false;
         int oriFirstDepth = firstDepth;
         startTime = System.currentTimeMillis();
+        budget = SearchBudget.child(parentBudget, timeLimitMs, nodeLimit);
+        generation = (generation + 1) & 0x7fff;
+        // 缓存太大时按代数老化：只淘汰比最近 KEEP_GENERATIONS 代更早写入的条目，
+        // 最近几次 aiFindPos 的结论留着；留下的仍然太多时才只保留当前代之前最近的一代
+        if (zobristCache.size() > MAX_CACHE_SIZE) {
+            zobristCache.values().removeIf(v -> ((generation - (v >>> 16)) & 0x7fff) > KEEP_GENERATIONS);
+            if (zobristCache.size() > MAX_CACHE_SIZE)
+                zobristCache.values().removeIf(v -> ((generation - (v >>> 16)) & 0x7fff) > 1);
+        }
+        long sharedKey = VCXResultCache.key(hasher.getHash(), aiColor, killOptimization);
+        int sharedCheck = VCXResultCache.enabled ? VCXResultCache.check(chessboardAlgo) : 0;
+        if (VCXResultCache.enabled) {
+            long cached = VCXResultCache.SHARED.probe(sharedKey, sharedCheck, oriFirstDepth);
+            if (cached != VCXResultCache.MISS) {
+                if (!VCXResultCache.isWin(cached)) return Position.EMPTY;
+                int move = hasher.fromCanonical(VCXResultCache.move(cached));
+                // 校验值之外再确认一次着法落在空位上，否则重新算
+                if (chessboardAlgo.getValInBoard(getX(move), getY(move)) == 0)
+                    return new Position(getY(move), getX(move), true);
+            }
+        }
         // 迭代加深
+        int completedDepth = 0;
         for (int i = Math.max(oriFirstDepth - 16, 5); i <= oriFirstDepth; i += 4) {
             firstDepth = i;
-            zobristCache = new HashMap<>();
             if (aiWin(aiColor, i, -1)) break;
-            if ((System.currentTimeMillis() - startTime) * timeFactor > TIME_LIMIT_MS) break;
+            if (aborted) break;
+            completedDepth = i;
+            // 下一轮预计要花这一轮 timeFactor 倍的时间，剩下的预算不够就不开始
+            if ((System.currentTimeMillis() - startTime) * (timeFactor - 1) > budget.remainingMillis()) break;
         }
         firstDepth = oriFirstDepth;
+        if (VCXResultCache.enabled) {
+            if (nextPoint != -1) VCXResultCache.SHARED.storeWin(sharedKey, sharedCheck, hasher.toCanonical(nextPoint));
+            else if (completedDepth > 0) VCXResultCache.SHARED.storeLose(sharedKey, sharedCheck, completedDepth);
+        }
         if (nextPoint == -1)
             return Position.EMPTY;
         return new Position(getY(nextPoint), getX(nextPoint), true);
@@ -79,95 +155,163 @@ public class VCX extends RecursiveBaseAIAlgo implements IWinningAlgo {
     // lastMaxPoint, lastAIMaxPointScore 为了优化性能, 方便剪枝
     boolean aiWin(int role, int depth, int lastMaxPoint) {
         // 因为会根据lastMaxPoint 进行进攻剪枝，所以CACHE里的输不一定是输
-        Boolean cached = zobristCache.get(hash);
-        if (cached != null) return cached;
+        // 根节点要给出 nextPoint，不查缓存
+        if (depth != firstDepth) {
+            Boolean cached = getCached(depth);
+            if (cached != null) return cached;
+        }
 
-        if (depth <= 0) return setAndReturn(false);
+        if (depth <= 0) return setAndReturn(false, depth);
 
-        List<Long> candidates = vcxCachedScoreManager.findAIKillSteps(lastMaxPoint);
-        if (!candidates.isEmpty() && score(candidates.get(0)) >= Score.FOUR.value) {
+        long[] candidates = candidateBuffer(depth);
+        int candidateCnt = vcxCachedScoreManager.findAIKillSteps(lastMaxPoint, candidates);
+        if (candidateCnt > 0 && score(candidates[0]) >= Score.FOUR.value) {
             if (depth == firstDepth)
-                nextPoint = pos(candidates.get(0));
-            return setAndReturn(true);
+                nextPoint = pos(candidates[0]);
+            return setAndReturn(true, depth);
         }
 
-        if (candidates.isEmpty()) return setAndReturn(false);
+        if (candidateCnt == 0) return setAndReturn(false, depth);
 
         debugContext.debugStartInfo(depth, firstDepth);
 
+        boolean win = attackAll(role, depth, candidates, candidateCnt);
+        if (aborted) return false;
+        return setAndReturn(win, depth);
+    }
+
+    // 依次尝试进攻方的候选点，根节点上找到必胜时记下 nextPoint
+    boolean attackAll(int role, int depth, long[] candidates, int candidateCnt) {
         int maxPoint = -1, aIMaxPointScore = 0;
-        for (long p : candidates) {
-            if (Thread.currentThread().isInterrupted()) return false;
-            if (System.currentTimeMillis() - startTime > TIME_LIMIT_MS) return false;
+        for (int i = 0; i < candidateCnt; i++) {
+            long p = candidates[i];
+            if (isAborted()) return false;
             int pos = pos(p), score = score(p);
 
             if (!debugContext.isInDebugStep(depth, firstDepth, pos)) continue;
 
-            int y = getY(pos), x = getX(pos);
-            addPiece(y, x, pos,true);
             if (score > -Score.FIVE.value) {
                 maxPoint = pos;
                 aIMaxPointScore = score;
             }
-            boolean humanLose = humanLose(Player.enemyColor(role), depth - 1, maxPoint, aIMaxPointScore);
-
-            debugContext.debugResultInfo(depth, y, x, firstDepth, String.format("human lose: %s", humanLose));
-
-            removePiece(y, x, pos, true);
-            if (humanLose) {
+            if (attack(role, depth, pos, maxPoint, aIMaxPointScore)) {
                 if (depth == firstDepth)
                     nextPoint = pos;
-                return setAndReturn(true);
+                return true;
             }
         }
-        return setAndReturn(false);
+        return false;
+    }
+
+    boolean attack(int role, int depth, int pos, int maxPoint, int aIMaxPointScore) {
+        int y = getY(pos), x = getX(pos);
+        addPiece(y, x, pos, true);
+        boolean humanLose = humanLose(Player.enemyColor(role), depth - 1, maxPoint, aIMaxPointScore);
+
+        debugContext.debugResultInfo(depth, y, x, firstDepth, String.format("human lose: %s", humanLose));
+
+        removePiece(y, x, pos, true);
+        return humanLose;
+    }
+
+    boolean isAborted() {
+        if (aborted) return true;
+        // 停止标记、中断和预算都每隔 CHECK_INTERVAL 个节点检查一次
+        if ((++checkCounter & SearchBudget.CHECK_MASK) == 0 && (stopRequested
+                || Thread.currentThread().isInterrupted() || budget.consume(SearchBudget.CHECK_INTERVAL)))
+            aborted = true;
+        return aborted;
+    }
+
+    // 停止后该实例的搜索都会立刻返回，结论不写入缓存
+    void stop() {
+        stopRequested = true;
+    }
+
+    // 根节点并行用：克隆棋盘，共用局面缓存、代数和计时
+    VCX fork() {
+        VCX worker = new VCX(chessboardAlgo.clone(), humanColor, firstDepth, killOptimization, zobristCache);
+        worker.startTime = startTime;
+        worker.budget = budget;
+        worker.generation = generation;
+        return worker;
+    }
+
+    // 每一轮根节点并行开始前重置，上一轮被停掉的 worker 可以继续用
+    void prepareRoot(int depth) {
+        firstDepth = depth;
+        aborted = false;
+        stopRequested = false;
     }
 
     private boolean humanLose(int role, int depth, int lastMaxPoint, int lastAIMaxPointScore) {
-        Boolean cached = zobristCache.get(hash);
+        Boolean cached = getCached(depth);
         if (cached != null) return cached;
         // 超过回合数，代表防守成功
-        if (depth <= 0) return setAndReturn(false);
-        List<Long> candidates = vcxCachedScoreManager.findHumanDefendSteps(lastAIMaxPointScore);
+        if (depth <= 0) return setAndReturn(false, depth);
+        long[] candidates = candidateBuffer(depth);
+        int candidateCnt = vcxCachedScoreManager.findHumanDefendSteps(lastAIMaxPointScore, candidates);
         // 如果发现对面没有进攻手段（活三，冲四，活四），则代表防守成功
-        if (candidates.isEmpty()) return setAndReturn(false);
+        if (candidateCnt == 0) return setAndReturn(false, depth);
         // 如果对面能成五，发现自己有成五；
         // 如果对面不能成五，发现自己有活四；
-        if (-1 * score(candidates.get(0)) >= Score.FOUR.value)
-            return setAndReturn(false);
+        if (-1 * score(candidates[0]) >= Score.FOUR.value)
+            return setAndReturn(false, depth);
         debugContext.debugStartInfo(depth, firstDepth);
-        for (long p : candidates) {
-            int pos = pos(p);
+        for (int i = 0; i < candidateCnt; i++) {
+            int pos = pos(candidates[i]);
             if (!debugContext.isInDebugStep(depth, firstDepth, pos)) continue;
             int y = getY(pos), x = getX(pos);
             addPiece(y, x, pos, false);
             boolean aiWin = aiWin(Player.enemyColor(role), depth - 1, lastMaxPoint);
             debugContext.debugResultInfo(depth, y, x, firstDepth, String.format("ai Win:%s",aiWin));
             removePiece(y, x, pos, false);
-            if (!aiWin) return setAndReturn(false);
+            if (!aiWin) return setAndReturn(false, depth);
         }
-        return setAndReturn(true);
+        return setAndReturn(true, depth);
     }
 
 
     protected void addPiece(int y, int x, int nextStep, boolean isAI) {
-        int color = isAI ? aiColor : humanColor;
-        hash ^= zobristTable[(nextStep << 1) | (color - 1)];
+        hasher.updateHash(y, x, isAI ? aiColor : humanColor);
         super.addPiece(y, x, isAI);
 
     }
 
     protected void removePiece(int y, int x, int nextStep, boolean isAI) {
-        int color = isAI ? aiColor : humanColor;
-        hash ^= zobristTable[(nextStep << 1) | (color - 1)];
+        hasher.updateHash(y, x, isAI ? aiColor : humanColor);
         super.removePiece(y, x, isAI);
     }
 
-    private boolean setAndReturn(boolean res) {
-        zobristCache.put(hash, res);
+    private long[] candidateBuffer(int depth) {
+        if (candidateBuffers == null || candidateBuffers.length <= depth) {
+            long[][] buffers = new long[Math.max(depth + 1, firstDepth + 1)][];
+            if (candidateBuffers != null) System.arraycopy(candidateBuffers, 0, buffers, 0, candidateBuffers.length);
+            candidateBuffers = buffers;
+        }
+        if (candidateBuffers[depth] == null) candidateBuffers[depth] = new long[size * size];
+        return candidateBuffers[depth];
+    }
+
+    private Boolean getCached(int depth) {
+        Integer cached = zobristCache.get(hasher.getHash());
+        if (cached == null) return null;
+        int cachedDepth = cached & 0xffff;
+        if (cachedDepth == WIN) return true;
+        return cachedDepth >= depth ? false : null;
+    }
+
+    private boolean setAndReturn(boolean res, int depth) {
+        if (!aborted) zobristCache.put(hasher.getHash(), generation << 16 | (res ? WIN : Math.max(depth, 0)));
         return res;
     }
 
+    @Override
+    public void setPieceCallBack(int y, int x, int player, boolean isAI) {
+        hasher.updateHash(y, x, player);
+        super.setPieceCallBack(y, x, player, isAI);
+    }
+
     public static Future<Position> asyncVCX(int depth, IChessboardAIAlgo chessBoardAlgo, int humanColor) {
         VCX tmp = new VCX(chessBoardAlgo.clone(), humanColor, depth);
         Callable<Position> futureTask = () -> tmp.aiFindPos();
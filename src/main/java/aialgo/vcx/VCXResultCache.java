@@ -0,0 +1,143 @@
+package aialgo.vcx;
+
+import chessboardalgo.IChessboardAIAlgo;
+
+import java.util.Arrays;
+
+// 进程内所有 VCX、VCF、威胁空间搜索实例共用的根节点结论缓存，key 为 局面 hash ^ 进攻方/算法的盐
+// 每条结论另外带一个和 hash 无关的 32 位校验值，hash 冲突时校验值对不上就当成未命中
+// 4 路组相联，每个槽两个 long: (key ^ data, data)，和 TranspositionTable 一样无锁读写，撕裂的槽只会当成未命中
+// 组满时按 clock（second chance）淘汰：命中会置上引用位，扫描时跳过并清掉引用位
+public class VCXResultCache {
+    public static final long MISS = 0;
+    public static boolean enabled = true;
+    public static final VCXResultCache SHARED = new VCXResultCache(8);
+
+    // data: 0-7 剩余深度，8-17 必胜着法 + 1，18 是否必胜，19 引用位，20-51 校验值，63 位恒为 1
+    private static final int MOVE_SHIFT = 8, CHECK_SHIFT = 20;
+    private static final long CHECK_MASK = 0xffffffffL << CHECK_SHIFT;
+    private static final long WIN = 1L << 18, REFERENCED = 1L << 19, VALID = 1L << 63;
+    private static final int WAYS = 4;
+    // 每个进攻方 5 个：VCX 的 3 种剪枝方式、VCF、威胁空间搜索
+    private static final int VCF = 3, TSS = 4, ALGOS = 5;
+    private static final long[] SALT = {0x6A09E667F3BCC908L, 0xBB67AE8584CAA73BL, 0x3C6EF372FE94F82BL,
+            0xA54FF53A5F1D36F1L, 0x510E527FADE682D1L, 0x9B05688C2B3E6C1FL, 0x1F83D9ABFB41BD6BL,
+            0x5BE0CD19137E2179L, 0xCBBB9D5DC1059ED8L, 0x629A292A367CD507L};
+
+    private final long[] table;
+    private final int setMask;
+
+    public VCXResultCache(int sizeInMB) {
+        if (sizeInMB <= 0) throw new IllegalArgumentException("cache size must be positive, got " + sizeInMB);
+        // 每组 4 个槽共 64 字节
+        long sets = Long.highestOneBit((long) sizeInMB * 1024 * 1024 / 64);
+        if (sets > (1 << 27)) throw new IllegalArgumentException("cache size too large: " + sizeInMB + "MB");
+        table = new long[(int) sets * WAYS * 2];
+        setMask = (int) sets - 1;
+    }
+
+    public static long key(long hash, int attackerColor, VCXOptimization optimization) {
+        return hash ^ SALT[(attackerColor - 1) * ALGOS + optimization.ordinal()];
+    }
+
+    public static long vcfKey(long hash, int attackerColor) {
+        return hash ^ SALT[(attackerColor - 1) * ALGOS + VCF];
+    }
+
+    public static long threatSpaceKey(long hash, int attackerColor) {
+        return hash ^ SALT[(attackerColor - 1) * ALGOS + TSS];
+    }
+
+    // 校验值：每个子按颜色和到棋盘中心的距离平方散列后求和，和落子顺序无关，对称变换下也不变，
+    // 对称棋盘上用规范化 hash 做 key 时同样适用
+    public static int check(IChessboardAIAlgo board) {
+        int size = board.getSize(), sum = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int color = board.getValInBoard(x, y);
+                if (color == 0) continue;
+                int dx = 2 * x - size + 1, dy = 2 * y - size + 1;
+                sum += (int) (((long) color << 20 | dx * dx + dy * dy) * 0x9E3779B97F4A7C15L >>> 32);
+            }
+        }
+        return sum;
+    }
+
+    public static boolean isWin(long data) {
+        return (data & WIN) != 0;
+    }
+
+    public static int move(long data) {
+        return (int) (data >>> MOVE_SHIFT & 0x3ff) - 1;
+    }
+
+    public static int depth(long data) {
+        return (int) data & 0xff;
+    }
+
+    // 必胜的结论和深度无关；不能胜只在记录的深度不小于要查的深度时可信，否则当成未命中
+    public long probe(long key, int check, int depth) {
+        int base = ((int) key & setMask) * WAYS * 2;
+        for (int slot = base; slot < base + WAYS * 2; slot += 2) {
+            long data = table[slot + 1];
+            if (data == MISS || (table[slot] ^ data) != key) continue;
+            if ((data & CHECK_MASK) != checkBits(check)) return MISS;
+            if (!isWin(data) && depth(data) < depth) return MISS;
+            if ((data & REFERENCED) == 0) {
+                table[slot] = key ^ (data | REFERENCED);
+                table[slot + 1] = data | REFERENCED;
+            }
+            return data;
+        }
+        return MISS;
+    }
+
+    public void storeWin(long key, int check, int move) {
+        store(key, VALID | checkBits(check) | WIN | ((long) (move + 1) << MOVE_SHIFT));
+    }
+
+    public void storeLose(long key, int check, int depth) {
+        store(key, VALID | checkBits(check) | Math.min(depth, 0xff));
+    }
+
+    private static long checkBits(int check) {
+        return (check & 0xffffffffL) << CHECK_SHIFT;
+    }
+
+    private void store(long key, long data) {
+        int base = ((int) key & setMask) * WAYS * 2;
+        int victim = -1;
+        for (int slot = base; slot < base + WAYS * 2; slot += 2) {
+            long old = table[slot + 1];
+            if (old != MISS && (table[slot] ^ old) == key) {
+                // 同一个局面已有必胜结论，或者已有更深的不能胜结论时不覆盖；校验值不同的是 hash 冲突，直接覆盖
+                boolean sameBoard = (old & CHECK_MASK) == (data & CHECK_MASK);
+                if (sameBoard && (isWin(old) || (!isWin(data) && depth(old) >= depth(data)))) return;
+                victim = slot;
+                break;
+            }
+            if (old == MISS && victim == -1) victim = slot;
+        }
+        if (victim == -1) victim = clockVictim(base, key);
+        table[victim] = key ^ data;
+        table[victim + 1] = data;
+    }
+
+    // 从 key 决定的位置开始转一圈，第一个没有引用位的槽被淘汰，路过的槽清掉引用位
+    private int clockVictim(int base, long key) {
+        int start = (int) (key >>> 62);
+        for (int i = 0; i < WAYS * 2; i++) {
+            int slot = base + ((start + i) % WAYS) * 2;
+            long data = table[slot + 1];
+            if ((data & REFERENCED) == 0) return slot;
+            long cleared = data & ~REFERENCED;
+            table[slot] = (table[slot] ^ data) ^ cleared;
+            table[slot + 1] = cleared;
+        }
+        return base + start * 2;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+    }
+}
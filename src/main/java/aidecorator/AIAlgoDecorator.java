@@ -3,6 +3,7 @@ package aidecorator;
 import aialgo.IAIAlgo;
 import chessboardalgo.IChessboardAIAlgo;
 import common.Position;
+import common.SearchBudget;
 import common.ThreadPoolContext;
 import lombok.Getter;
 import scorecalculator.IScoreManager;
@@ -20,6 +21,9 @@ public abstract class AIAlgoDecorator implements IAIAlgo {
     protected int humanColor;
     @Getter
     protected IScoreManager scoreManager;
+    protected SearchBudget parentBudget = null;
+    // 一次 runInParallel 里并行的搜索共用这个子预算，拿到结果后取消它，还在跑的搜索在下一次检查时退出
+    private SearchBudget round = null;
 
     public AIAlgoDecorator(IAIAlgo iaiAlgo){
         this.decoratedAIAlgo = iaiAlgo;
@@ -32,6 +36,23 @@ public abstract class AIAlgoDecorator implements IAIAlgo {
         decoratedAIAlgo.setPieceCallBack(y, x, player, isAI);
     }
 
+    public IAIAlgo getDecoratedAIAlgo() {
+        return decoratedAIAlgo;
+    }
+
+    @Override
+    public void setParentBudget(SearchBudget parentBudget) {
+        this.parentBudget = parentBudget;
+        decoratedAIAlgo.setParentBudget(parentBudget);
+    }
+
+    // 在 runInParallel 之前调用，被装饰的 AI 和 algos 都挂到这一轮的预算下
+    protected void startRound(IAIAlgo... algos) {
+        round = SearchBudget.child(parentBudget, SearchBudget.NO_LIMIT, SearchBudget.NO_LIMIT);
+        decoratedAIAlgo.setParentBudget(round);
+        for (IAIAlgo algo : algos) algo.setParentBudget(round);
+    }
+
     public boolean isWinning() {
         if (decoratedAIAlgo instanceof AIAlgoDecorator) {
             return ((AIAlgoDecorator) decoratedAIAlgo).isWinning();
@@ -79,6 +100,12 @@ public abstract class AIAlgoDecorator implements IAIAlgo {
             e.printStackTrace();
         }
         //System.out.println(getClass().getSimpleName() + " cancel ");
+        if (round != null) {
+            round.cancel();
+            round = null;
+            decoratedAIAlgo.setParentBudget(parentBudget);
+        }
+        // 不接受预算的 AI（比如 MCTS）仍然靠中断停下
         task2Callback.keySet().forEach(i -> i.cancel(true));
         //System.out.println(getClass().getSimpleName() + " return " + end);
         return end;
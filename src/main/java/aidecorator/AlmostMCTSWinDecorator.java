@@ -29,6 +29,7 @@ public class AlmostMCTSWinDecorator extends AIAlgoDecorator {
             tmp = new AlmostMCTSWin(chessboardAlgo.clone(), humanColor, eachChdTimeLimitMs, depth);
         else
             tmp = almostMCTSWinAlgo;
+        startRound(tmp);
         return runInParallel(() -> decoratedAIAlgo.aiFindPos(),
                 new WinningAlgoTask(
                         () -> tmp.aiFindPos(),
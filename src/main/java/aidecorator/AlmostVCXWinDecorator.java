@@ -28,6 +28,7 @@ public class AlmostVCXWinDecorator extends AIAlgoDecorator {
             return decoratedAIAlgo.aiFindPos();
         }
         AlmostVCXWin vcx = new AlmostVCXWin(chessboardAlgo.clone(), humanColor, depth);
+        startRound(vcx);
         return runInParallel(() -> decoratedAIAlgo.aiFindPos(),
                 new WinningAlgoTask(
                         () -> vcx.aiFindPos(),
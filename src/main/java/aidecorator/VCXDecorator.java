@@ -1,13 +1,17 @@
 package aidecorator;
 
 import aialgo.IAIAlgo;
+import aialgo.IWinningAlgo;
 import common.Position;
+import aialgo.vcx.VCF;
 import aialgo.vcx.VCX;
 
 import java.util.concurrent.Future;
 
 public class VCXDecorator extends AIAlgoDecorator {
-    public VCX mustWin = null;
+    // 每步开局前同步跑的 VCF 只是快速检查，找不到再交给和主搜索并行的 VCX
+    private static final long VCF_PRE_CHECK_MS = 200;
+    public IWinningAlgo mustWin = null;
     private int vcxDepth;
 
     public VCXDecorator(IAIAlgo decoratedAIAlgo, int vcxDepth) {
@@ -29,13 +33,27 @@ public class VCXDecorator extends AIAlgoDecorator {
             return pos;
         }
 
-        VCX vcx = new VCX(chessboardAlgo.clone(), humanColor, vcxDepth);
+        // 连续冲四能赢就不用再开完整的 VCX，之后也一直沿着 VCF 走
+        VCF vcf = new VCF(chessboardAlgo, humanColor, vcxDepth);
+        // 同步执行，占用的是这一步的时间，只给很小的预算；外层取消时也要能停下
+        vcf.setTimeLimitMs(VCF_PRE_CHECK_MS);
+        vcf.setParentBudget(parentBudget);
+        Position vcfPos = vcf.aiFindPos();
+        if (vcfPos != Position.EMPTY) {
+            // 之后沿着必胜走的 VCF 用默认的时间上限
+            mustWin = new VCF(chessboardAlgo, humanColor, vcxDepth);
+            System.out.println("算杀必胜");
+            return vcfPos;
+        }
+
+        IWinningAlgo vcx = VCX.create(chessboardAlgo.clone(), humanColor, vcxDepth);
+        startRound(vcx);
 
         Position res = runInParallel(() -> decoratedAIAlgo.aiFindPos(),
                 new WinningAlgoTask(() -> vcx.aiFindPos(),
                         pos -> {
                             if (pos != Position.EMPTY) {
-                                mustWin = new VCX(chessboardAlgo, humanColor, vcxDepth - 2);
+                                mustWin = VCX.create(chessboardAlgo, humanColor, vcxDepth - 2);
                                 System.out.println("算杀必胜");
                             } else {
                                 System.out.println("算杀失败");
@@ -0,0 +1,196 @@
+package chessboardalgo;
+
+import UI.Piece;
+import common.BoardToString;
+import common.Position;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// 每种颜色在 横/竖/斜/反斜 四个方向上各存一份 long 位图，
+// 成五判断和邻居判断只需要几次移位和按位与
+public class ChessboardBitboardAlgo implements IChessboardAlgo {
+    public static final int HORIZONTAL = 0, VERTICAL = 1, DIAGONAL = 2, ANTI_DIAGONAL = 3;
+
+    protected final int size;
+    // lines[orientation][color][lineIdx], 横线以 x 为位下标，其余以 y 为位下标
+    protected final long[][][] lines;
+    protected final long rowMask;
+    protected Deque<Position> allSteps;
+
+    public ChessboardBitboardAlgo(int size) {
+        if (size > 63) throw new IllegalArgumentException("bitboard supports size up to 63, got " + size);
+        this.size = size;
+        lines = new long[4][3][];
+        for (int color = 1; color <= 2; color++) {
+            lines[HORIZONTAL][color] = new long[size];
+            lines[VERTICAL][color] = new long[size];
+            lines[DIAGONAL][color] = new long[2 * size - 1];
+            lines[ANTI_DIAGONAL][color] = new long[2 * size - 1];
+        }
+        rowMask = (1L << size) - 1;
+        allSteps = new ArrayDeque<>();
+    }
+
+    @Override
+    public ChessboardBitboardAlgo clone() {
+        ChessboardBitboardAlgo cloned = new ChessboardBitboardAlgo(size);
+        copyLinesTo(cloned);
+        cloned.allSteps.addAll(allSteps);
+        return cloned;
+    }
+
+    protected void copyLinesTo(ChessboardBitboardAlgo cloned) {
+        for (int o = 0; o < 4; o++) {
+            for (int color = 1; color <= 2; color++) {
+                System.arraycopy(lines[o][color], 0, cloned.lines[o][color], 0, lines[o][color].length);
+            }
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public boolean isLegalMove(Piece p) {
+        return isLegalMove(p.getX(), p.getY());
+    }
+
+    @Override
+    public boolean isLegalMove(int x, int y) {
+        return x >= 0 && x < size && y >= 0 && y < size && getValInBoard(x, y) == 0;
+    }
+
+    @Override
+    public void setPiece(Piece piece) {
+        allSteps.offerLast(new Position(piece.getY(), piece.getX()));
+        setPiece(piece.getX(), piece.getY(), piece.getPlayer().getId());
+    }
+
+    @Override
+    public void setPiece(int x, int y, int color) {
+        long bx = 1L << x, by = 1L << y;
+        int d = y - x + size - 1, a = y + x;
+        for (int c = 1; c <= 2; c++) {
+            if (c == color) {
+                lines[HORIZONTAL][c][y] |= bx;
+                lines[VERTICAL][c][x] |= by;
+                lines[DIAGONAL][c][d] |= by;
+                lines[ANTI_DIAGONAL][c][a] |= by;
+            } else {
+                lines[HORIZONTAL][c][y] &= ~bx;
+                lines[VERTICAL][c][x] &= ~by;
+                lines[DIAGONAL][c][d] &= ~by;
+                lines[ANTI_DIAGONAL][c][a] &= ~by;
+            }
+        }
+    }
+
+    @Override
+    public Deque<Position> getAllSteps() {
+        return new ArrayDeque<>(allSteps);
+    }
+
+    @Override
+    public boolean isTerminal(int x, int y) {
+        int playerId = getValInBoard(x, y);
+        assert playerId != 0;
+        return hasFive(lines[HORIZONTAL][playerId][y], x)
+                || hasFive(lines[VERTICAL][playerId][x], y)
+                || hasFive(lines[DIAGONAL][playerId][y - x + size - 1], y)
+                || hasFive(lines[ANTI_DIAGONAL][playerId][y + x], y);
+    }
+
+    // 只看以 bit 为中心的 9 格窗口，和逐格扫描的结果一致
+    private static boolean hasFive(long line, int bit) {
+        int lo = Math.max(0, bit - 4);
+        long m = (line >>> lo) & (0x1FFL >>> (lo - (bit - 4)));
+        return (m & (m >>> 1) & (m >>> 2) & (m >>> 3) & (m >>> 4)) != 0;
+    }
+
+    @Override
+    public int steps() {
+        return allSteps.size();
+    }
+
+    @Override
+    public boolean isTerminal(Piece piece) {
+        return isTerminal(piece.getX(), piece.getY());
+    }
+
+    @Override
+    public int getValInBoard(int x, int y) {
+        assert x >= 0 && x < size && y >= 0 && y < size;
+        long[][] rows = lines[HORIZONTAL];
+        return (int) ((rows[1][y] >>> x) & 1) | (int) (((rows[2][y] >>> x) & 1) << 1);
+    }
+
+    @Override
+    public boolean hasNeighbor(int x, int y, int distance, int count) {
+        assert x >= 0 && x < size && y >= 0 && y < size;
+        int lo = Math.max(0, x - distance), hi = Math.min(size - 1, x + distance);
+        long mask = (rowMask >>> (size - 1 - hi + lo)) << lo;
+        long self = 1L << x;
+        long[] white = lines[HORIZONTAL][1], black = lines[HORIZONTAL][2];
+        int sy = Math.max(0, y - distance), ey = Math.min(size - 1, y + distance);
+        for (int i = sy; i <= ey; i++) {
+            long occupied = (white[i] | black[i]) & mask;
+            if (i == y) occupied &= ~self;
+            count -= Long.bitCount(occupied);
+            if (count <= 0) return true;
+        }
+        return false;
+    }
+
+    // 返回 (y, x) 所在 orientation 方向那条线上 color 的位图
+    public long getLine(int orientation, int color, int y, int x) {
+        switch (orientation) {
+            case HORIZONTAL: return lines[HORIZONTAL][color][y];
+            case VERTICAL: return lines[VERTICAL][color][x];
+            case DIAGONAL: return lines[DIAGONAL][color][y - x + size - 1];
+            case ANTI_DIAGONAL: return lines[ANTI_DIAGONAL][color][y + x];
+        }
+        throw new IllegalArgumentException("invalid orientation " + orientation);
+    }
+
+    // (y, x) 所在线上合法格子的掩码，与 getLine 使用同一套位下标
+    public long getLineMask(int orientation, int y, int x) {
+        switch (orientation) {
+            case HORIZONTAL:
+            case VERTICAL: return rowMask;
+            case DIAGONAL: {
+                int k = y - x;
+                int lo = Math.max(0, k), hi = Math.min(size - 1, size - 1 + k);
+                return (rowMask >>> (size - 1 - hi + lo)) << lo;
+            }
+            case ANTI_DIAGONAL: {
+                int k = y + x;
+                int lo = Math.max(0, k - size + 1), hi = Math.min(size - 1, k);
+                return (rowMask >>> (size - 1 - hi + lo)) << lo;
+            }
+        }
+        throw new IllegalArgumentException("invalid orientation " + orientation);
+    }
+
+    // (y, x) 在该方向线上的位下标
+    public static int getLineBit(int orientation, int y, int x) {
+        return orientation == HORIZONTAL ? x : y;
+    }
+
+    @Override
+    public void print() {
+        System.out.println("-----board-------");
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++)
+                System.out.print(getValInBoard(j, i) + "\t");
+            System.out.println();
+        }
+    }
+
+    @Override
+    public String generateStepsCode() {
+        return BoardToString.serialize(this.getAllSteps());
+    }
+}
@@ -0,0 +1,81 @@
+package common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// 一次搜索的资源预算：截止时间、节点数上限和取消标记
+// 嵌套的搜索用 child() 开子预算：截止时间不会晚于父预算，节点数同时计到父预算上，父预算取消或耗尽时子预算也随之耗尽
+public class SearchBudget {
+    public static final long NO_LIMIT = Long.MAX_VALUE;
+    // 搜索在热路径上只给自己的节点计数器自增，每 CHECK_INTERVAL 个节点才调用一次 consume，
+    // 取消标记和截止时间都在这时检查，不用每个节点都读 volatile 和取时间
+    public static final int CHECK_INTERVAL = 256, CHECK_MASK = CHECK_INTERVAL - 1;
+
+    private final SearchBudget parent;
+    private final long deadline;
+    private final long maxNodes;
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile boolean cancelled = false;
+
+    private SearchBudget(SearchBudget parent, long deadline, long maxNodes) {
+        this.parent = parent;
+        this.deadline = deadline;
+        this.maxNodes = maxNodes;
+    }
+
+    public static SearchBudget unlimited() {
+        return new SearchBudget(null, NO_LIMIT, NO_LIMIT);
+    }
+
+    public static SearchBudget of(long timeLimitMs, long maxNodes) {
+        return child(null, timeLimitMs, maxNodes);
+    }
+
+    // parent 为 null 时是一个独立的预算
+    public static SearchBudget child(SearchBudget parent, long timeLimitMs, long maxNodes) {
+        if (timeLimitMs < 0) throw new IllegalArgumentException("time limit must not be negative, got " + timeLimitMs);
+        if (maxNodes <= 0) throw new IllegalArgumentException("node limit must be positive, got " + maxNodes);
+        long deadline = timeLimitMs == NO_LIMIT ? NO_LIMIT : System.currentTimeMillis() + timeLimitMs;
+        if (parent != null) deadline = Math.min(deadline, parent.deadline);
+        return new SearchBudget(parent, deadline, maxNodes);
+    }
+
+    public SearchBudget child(long timeLimitMs, long maxNodes) {
+        return child(this, timeLimitMs, maxNodes);
+    }
+
+    public SearchBudget child(long timeLimitMs) {
+        return child(this, timeLimitMs, NO_LIMIT);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        for (SearchBudget b = this; b != null; b = b.parent) {
+            if (b.cancelled) return true;
+        }
+        return false;
+    }
+
+    // 记 n 个节点，返回预算是否已经耗尽
+    public boolean consume(long n) {
+        for (SearchBudget b = this; b != null; b = b.parent) b.nodes.addAndGet(n);
+        return isExhausted();
+    }
+
+    public boolean isExhausted() {
+        for (SearchBudget b = this; b != null; b = b.parent) {
+            if (b.cancelled || b.nodes.get() >= b.maxNodes) return true;
+        }
+        return deadline != NO_LIMIT && System.currentTimeMillis() > deadline;
+    }
+
+    public long remainingMillis() {
+        return deadline == NO_LIMIT ? NO_LIMIT : Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    public long getNodes() {
+        return nodes.get();
+    }
+}
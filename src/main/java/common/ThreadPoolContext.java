@@ -6,6 +6,9 @@ import java.util.concurrent.ThreadPoolExecutor;
 
 public class ThreadPoolContext {
     public static ExecutorService threadPool = Executors.newFixedThreadPool(16);
+    // 后台思考的任务本身会往 threadPool 提交子任务，单独放一个池子避免互相等待
+    // 同时在跑的后台思考不超过池子大小，多出来的排队
+    public static ExecutorService ponderPool = Executors.newFixedThreadPool(4);
     public static void waitActiveThreadNumberLowerEqualThan(int threshold) {
         ThreadPoolExecutor tpe = (ThreadPoolExecutor) threadPool;
         while (tpe.getActiveCount() > threshold) Thread.yield();
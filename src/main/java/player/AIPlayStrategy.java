@@ -5,27 +5,67 @@ import UI.IUICallback;
 import UI.MessagingPanel;
 import UI.Piece;
 import aialgo.IAIAlgo;
+import aialgo.MinMaxAIAlgo;
+import aidecorator.AIAlgoDecorator;
 import aidecorator.ConsistentDecorator;
+import chessboardalgo.IChessboardAIAlgo;
+import chessboardalgo.IChessboardAlgo;
 import common.Position;
+import common.ThreadPoolContext;
 import consistent.IConsistentAlgo;
+import lombok.Setter;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
 
 public class AIPlayStrategy implements IPlayStrategy {
     private IAIAlgo aiAlgo;
     private IUICallback uiCallback;
+    // 后台思考：己方落子后预测对手最可能的几步，各自在克隆的棋盘上提前搜索
+    // 工厂的第二个参数是当前 AI 里的 MinMax 搜索，新建的 AI 和它共用置换表，猜没猜中算过的局面都留在表里
+    private BiFunction<IChessboardAlgo, MinMaxAIAlgo, IAIAlgo> ponderFactory;
+    // 对局用的棋盘，猜中后换上来的 AI 用的是自己的棋盘，之后的落子要同步过去
+    private IChessboardAlgo gameBoard;
+    // 同时预测的对手落子数，第一个取上一次搜索主变例里的应着
+    @Setter
+    private int ponderWidth = 1;
+    private final Map<Integer, Ponder> ponders = new HashMap<>();
+    // 在对局线程里写，decidePiecePos 可能在别的线程读
+    private volatile Ponder ponderHit;
+    // 对手也是 AI 时后台思考只会和对手抢 CPU
+    private boolean opponentIsAI = false;
+
     public AIPlayStrategy(IAIAlgo aiAlgo, IUICallback uiCallback) {
+        this(aiAlgo, uiCallback, null);
+    }
+
+    public AIPlayStrategy(IAIAlgo aiAlgo, IUICallback uiCallback, BiFunction<IChessboardAlgo, MinMaxAIAlgo, IAIAlgo> ponderFactory) {
         if (aiAlgo.getChessboardAlgo() instanceof IConsistentAlgo && (! (aiAlgo instanceof IConsistentAlgo))) {
             this.aiAlgo = new ConsistentDecorator(aiAlgo);
         } else {
             this.aiAlgo = aiAlgo;
         }
         this.uiCallback = uiCallback;
+        // 对称变换的棋盘内部坐标和落子坐标不一致，不做后台思考
+        IChessboardAIAlgo board = aiAlgo.getChessboardAlgo();
+        if (board instanceof IChessboardAlgo && !(board instanceof IConsistentAlgo)) {
+            this.ponderFactory = ponderFactory;
+            this.gameBoard = (IChessboardAlgo) board;
+        }
     }
 
     @Override
     public Position decidePiecePos() {
         if (uiCallback != null)
             uiCallback.onAIThinkingStart();
-        Position res = aiAlgo.aiFindPos();
+        Position res = takePonderResult();
+        if (res == Position.EMPTY)
+            res = aiAlgo.aiFindPos();
         if (uiCallback != null)
             uiCallback.onAIThinkingDone();
 
@@ -34,7 +74,28 @@ public class AIPlayStrategy implements IPlayStrategy {
 
     @Override
     public void setPieceCallback(Piece piece, boolean isAI) {
+        IChessboardAIAlgo board = aiAlgo.getChessboardAlgo();
+        if (ponderFactory == null) {
+            aiAlgo.setPieceCallBack(piece.getY(), piece.getX(), piece.getPlayer().getId(), isAI);
+            return;
+        }
+        int move = piece.getY() * board.getSize() + piece.getX();
+        if (piece.getPlayer().getId() == aiAlgo.getHumanColor()) {
+            opponentIsAI = isAI;
+            Ponder hit = ponders.remove(move);
+            cancelPonders();
+            if (hit != null) {
+                // 猜中：换成后台思考的 AI，它的棋盘上已经有这步，置换表、VCX 必胜结论和 MCTS 树都跟着留下
+                aiAlgo = hit.algo;
+                ponderHit = hit;
+                return;
+            }
+        }
+        if (board != gameBoard) ((IChessboardAlgo) board).setPiece(piece);
         aiAlgo.setPieceCallBack(piece.getY(), piece.getX(), piece.getPlayer().getId(), isAI);
+        if (piece.getPlayer().getId() != aiAlgo.getHumanColor() && !opponentIsAI && !board.isTerminal(piece.getX(), piece.getY())) {
+            startPonders();
+        }
     }
 
     @Override
@@ -42,5 +103,81 @@ public class AIPlayStrategy implements IPlayStrategy {
         return true;
     }
 
+    @Override
+    public void stop() {
+        cancelPonders();
+        Ponder hit = ponderHit;
+        ponderHit = null;
+        if (hit != null) hit.future.cancel(true);
+    }
 
+    private void startPonders() {
+        cancelPonders();
+        // 已经算出必胜时沿着原来的 AI 走，换 AI 会丢掉必胜的结论
+        if (aiAlgo instanceof AIAlgoDecorator && ((AIAlgoDecorator) aiAlgo).isWinning()) return;
+        IChessboardAlgo board = (IChessboardAlgo) aiAlgo.getChessboardAlgo();
+        MinMaxAIAlgo searcher = searcherOf(aiAlgo);
+        Player human = aiAlgo.getHumanColor() == Player.WHITE.getId() ? Player.WHITE : Player.BLACK;
+        for (int move : predictReplies(board, searcher)) {
+            IChessboardAlgo cloned = (IChessboardAlgo) board.clone();
+            cloned.setPiece(new Piece(move % board.getSize(), move / board.getSize(), human));
+            IAIAlgo algo = ponderFactory.apply(cloned, searcher);
+            ponders.put(move, new Ponder(algo, ThreadPoolContext.ponderPool.submit(algo::aiFindPos)));
+        }
+    }
+
+    // 主变例里的应着排第一，不够 ponderWidth 个时按评分候选点补
+    private Set<Integer> predictReplies(IChessboardAlgo board, MinMaxAIAlgo searcher) {
+        Set<Integer> replies = new LinkedHashSet<>();
+        int size = board.getSize(), humanColor = aiAlgo.getHumanColor();
+        int pv = searcher == null ? -1 : searcher.pvMove();
+        if (pv >= 0 && board.getValInBoard(pv % size, pv / size) == 0) replies.add(pv);
+        int[] candidates = new int[size * size];
+        int cnt = aiAlgo.getScoreManager().generateCandidatePiece(humanColor, false, 1, ponderWidth, candidates);
+        for (int i = 0; i < cnt && replies.size() < ponderWidth; i++) replies.add(candidates[i]);
+        return replies;
+    }
+
+    // 测试用
+    Set<Integer> ponderedMoves() {
+        return ponders.keySet();
+    }
+
+    private static MinMaxAIAlgo searcherOf(IAIAlgo algo) {
+        while (algo instanceof AIAlgoDecorator) algo = ((AIAlgoDecorator) algo).getDecoratedAIAlgo();
+        return algo instanceof MinMaxAIAlgo ? (MinMaxAIAlgo) algo : null;
+    }
+
+    private void cancelPonders() {
+        ponders.values().forEach(p -> p.future.cancel(true));
+        ponders.clear();
+    }
+
+    // 猜中时等后台搜索结束，已经在对手思考期间算过的部分不用重算
+    private Position takePonderResult() {
+        Ponder hit = ponderHit;
+        ponderHit = null;
+        if (hit == null) return Position.EMPTY;
+        try {
+            Position res = hit.future.get();
+            if (res != Position.EMPTY && aiAlgo.getChessboardAlgo().isLegalMove(res.x, res.y)) return res;
+        } catch (InterruptedException e) {
+            hit.future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println(getClass().getSimpleName() + " ponder error");
+            e.printStackTrace();
+        }
+        return Position.EMPTY;
+    }
+
+    private static class Ponder {
+        private final IAIAlgo algo;
+        private final Future<Position> future;
+
+        private Ponder(IAIAlgo algo, Future<Position> future) {
+            this.algo = algo;
+            this.future = future;
+        }
+    }
 }
@@ -10,4 +10,8 @@ public interface IPlayStrategy {
     void setPieceCallback(Piece piece, boolean isAI);
 
     boolean isAI();
+
+    // 对局结束或重新开局时调用，停止后台任务
+    default void stop() {
+    }
 }
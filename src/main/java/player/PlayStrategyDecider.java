@@ -2,8 +2,12 @@ package player;
 
 import UI.Chessboard;
 import UI.IUICallback;
+import aialgo.IAIAlgo;
+import aialgo.MinMaxAIAlgo;
 import aialgo.ThreadSafeMinMaxAIAlgo;
 import aidecorator.*;
+import chessboardalgo.ChessboardBitboardAlgo;
+import chessboardalgo.ChessboardBitboardAlgoConsistent;
 import chessboardalgo.ChessboardByteArrayAlgoConsistent;
 import chessboardalgo.ChessboardByteArrayAlgo;
 import chessboardalgo.IChessboardAlgo;
@@ -13,47 +17,60 @@ public class PlayStrategyDecider {
     public static final String HUMAN = "human";
     public static final String FAST_AI = "fast AI";
     public static final String SMART_AI = "smart AI";
+    // 对手思考时按预测的落子提前搜索，默认关闭
+    public static boolean ponder = false;
 
     public static IChessboardAlgo decideChessboardAlgo(String blackStrategyName, String whiteStrategyName) {
+        return decideChessboardAlgo(blackStrategyName, whiteStrategyName, false);
+    }
+
+    // bitboard 为 true 时用位图棋盘，搜索时的 isTerminal/hasNeighbor/getValInBoard 更快
+    public static IChessboardAlgo decideChessboardAlgo(String blackStrategyName, String whiteStrategyName, boolean bitboard) {
         if (SMART_AI.equals(blackStrategyName)) { // 黑棋先手，且是最强AI时
-            return new ChessboardByteArrayAlgoConsistent(Chessboard.CHESSBOARD_SIZE);
+            return bitboard ? new ChessboardBitboardAlgoConsistent(Chessboard.CHESSBOARD_SIZE)
+                    : new ChessboardByteArrayAlgoConsistent(Chessboard.CHESSBOARD_SIZE);
         } else {
-            return new ChessboardByteArrayAlgo(Chessboard.CHESSBOARD_SIZE);
+            return bitboard ? new ChessboardBitboardAlgo(Chessboard.CHESSBOARD_SIZE)
+                    : new ChessboardByteArrayAlgo(Chessboard.CHESSBOARD_SIZE);
         }
     }
 
     public static IPlayStrategy buildPlayStrategy(String name, IChessboardAlgo chessboardAlgo, int enemyColor, IUICallback uiCallback) {
         switch (name) {
             case HUMAN: return HumanPlayStrategy.INSTANCE;
-            case FAST_AI: return new AIPlayStrategy(new VCXDecorator(new ThreadSafeMinMaxAIAlgo(chessboardAlgo, enemyColor), 23), uiCallback);
+            case FAST_AI:
             case SMART_AI:
-            {
-                if (enemyColor == Player.WHITE.getId()) {
-                    return new AIPlayStrategy(
-                            new FirstPlayBeginningLookupDecorator(
-                                    new VCXDecorator(
-                                            new AlmostMCTSWinDecorator(
-                                                new AlmostVCXWinDecorator(
-                                                        new ThreadSafeMinMaxAIAlgo(chessboardAlgo, enemyColor, 9, NegamaxVCXEnhancedContext.ATTACK),
-                                                        23),
-                                                2500,
-                                                9
-                                            ),
-                                            27
-                                    )
-                            ),
-                            uiCallback
-                    );
-                } else {
-                    return new AIPlayStrategy(
-                            new SecondPlayBeginningDecorator(
-                            new VCXDecorator(new ThreadSafeMinMaxAIAlgo(chessboardAlgo, enemyColor, 9, NegamaxVCXEnhancedContext.DEFENSE), 27)),
-                            uiCallback);
-                }
-            }
+                return new AIPlayStrategy(buildAIAlgo(name, chessboardAlgo, enemyColor, null), uiCallback,
+                        ponder ? (board, searcher) -> buildAIAlgo(name, board, enemyColor, searcher) : null);
         }
         throw new IllegalStateException("invalid area");
     }
 
+    // shareTableWith 不为空时里面的 MinMax 搜索和它共用置换表
+    private static IAIAlgo buildAIAlgo(String name, IChessboardAlgo chessboardAlgo, int enemyColor, MinMaxAIAlgo shareTableWith) {
+        if (FAST_AI.equals(name)) {
+            return new VCXDecorator(new ThreadSafeMinMaxAIAlgo(chessboardAlgo, enemyColor, 9,
+                    NegamaxVCXEnhancedContext.DISABLE, shareTableWith), 23);
+        }
+        if (enemyColor == Player.WHITE.getId()) {
+            return new FirstPlayBeginningLookupDecorator(
+                    new VCXDecorator(
+                            new AlmostMCTSWinDecorator(
+                                new AlmostVCXWinDecorator(
+                                        new ThreadSafeMinMaxAIAlgo(chessboardAlgo, enemyColor, 9, NegamaxVCXEnhancedContext.ATTACK,
+                                                shareTableWith),
+                                        23),
+                                2500,
+                                9
+                            ),
+                            27
+                    )
+            );
+        }
+        return new SecondPlayBeginningDecorator(
+                new VCXDecorator(new ThreadSafeMinMaxAIAlgo(chessboardAlgo, enemyColor, 9, NegamaxVCXEnhancedContext.DEFENSE,
+                        shareTableWith), 27));
+    }
+
 
 }
@@ -2,27 +2,75 @@ package scorecalculator;
 
 import chessboardalgo.IChessboardAIAlgo;
 import common.PositionConverter;
+import lombok.Setter;
 import player.Player;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static common.PositionConverter.convertToIdx;
 
 public class CachedScoreManager implements IScoreManager {
+    public static boolean defaultIncrementalUpdate = true;
+    // 调试用，每次 evaluation 都和全盘重算的结果对比
+    public static boolean checkRunningTotal = false;
     protected int[][][][] scoreCache;
     protected int[][] blackScore;
     protected int[][] whiteScore;
     protected PointEvaluator pointEvaluator;
     protected int size;
     protected IChessboardAIAlgo chessBoardAlgo;
+    // 增量模式下只重算扫描能读到落子点的格子，结果和全量重算完全一致
+    @Setter
+    protected boolean incrementalUpdate = defaultIncrementalUpdate;
+    // validDirs[role][idx] 第 d 位表示该方向的缓存分数算过；没算过的缓存是 0，全量模式碰到就会重算，增量模式也要照做
+    private byte[][] validDirs;
+    // invalidInLine[role][dir][lineIdx] 该线上还没算过的格子数
+    private int[][][] invalidInLine;
+    // 上一次 updateScore 中被重新赋值过的格子
+    protected int[] dirtyCells;
+    protected int dirtyCount;
+    private int[] dirtyStamp;
+    private int stamp;
+    // 黑子格上的黑分之和 / 白子格上的白分之和，以及每格当前计入总和的值
+    protected int blackTotal, whiteTotal;
+    private int[] contribution;
+    // generateCandidatePiece 的分桶，编号顺序即优先级
+    private static final int FIVES = 0, MY_FOURS = 1, ENEMY_FOURS = 2, MY_BLOCKED_FOURS = 3, ENEMY_BLOCKED_FOURS = 4,
+            MY_TWO_THREES = 5, ENEMY_TWO_THREES = 6, MY_THREES = 7, ENEMY_THREES = 8, MY_TWOS = 9, ENEMY_TWOS = 10,
+            ONES = 11, BUCKET_COUNT = 12;
+    private int[][] buckets;
+    private final int[] bucketSize = new int[BUCKET_COUNT];
+    private int[][] twoScores;
+    private int[] candidateBuffer;
     public CachedScoreManager(IChessboardAIAlgo chessBoardAIAlgo) {
+        this(chessBoardAIAlgo, PointEvaluator::new);
+    }
+
+    // 查表版 PatternPointEvaluator::new 和扫描版分数完全一致，需要时显式传入
+
+    public CachedScoreManager(IChessboardAIAlgo chessBoardAIAlgo, PointEvaluatorFactory pointEvaluatorFactory) {
         chessBoardAlgo = chessBoardAIAlgo;
         size = chessBoardAlgo.getSize();
         scoreCache = new int[3][4][size][size];
         blackScore = new int[size][size];
         whiteScore = new int[size][size];
-        pointEvaluator = new PointEvaluator(size, chessBoardAlgo, scoreCache);
+        dirtyCells = new int[size * size];
+        dirtyStamp = new int[size * size];
+        contribution = new int[size * size];
+        validDirs = new byte[3][size * size];
+        invalidInLine = new int[3][4][2 * size - 1];
+        for (int role = 1; role <= 2; role++) {
+            for (int j = 0; j < size; j++) {
+                for (int i = 0; i < size; i++) {
+                    for (Direction dir : Direction.values()) {
+                        invalidInLine[role][dir.ordinal()][lineIdx(j, i, dir)]++;
+                    }
+                }
+            }
+        }
+        pointEvaluator = pointEvaluatorFactory.create(size, chessBoardAlgo, scoreCache);
         initScore();
     }
 
@@ -33,20 +81,21 @@ public class CachedScoreManager implements IScoreManager {
                 int val = chessBoardAlgo.getValInBoard(i, j);
                 if (val == 0) {
                     if (chessBoardAlgo.hasNeighbor(i, j, 2, 1)) {
-                        blackScore[j][i] = pointEvaluator.scorePoint(j, i, Player.BLACK.getId());
-                        whiteScore[j][i] = pointEvaluator.scorePoint(j, i, Player.WHITE.getId());
+                        blackScore[j][i] = scorePoint(j, i, Player.BLACK.getId(), null);
+                        whiteScore[j][i] = scorePoint(j, i, Player.WHITE.getId(), null);
                     }
                 } else if (val == Player.BLACK.getId()) {
-                    blackScore[j][i] = pointEvaluator.scorePoint(j, i, Player.BLACK.getId());
+                    blackScore[j][i] = scorePoint(j, i, Player.BLACK.getId(), null);
                     whiteScore[j][i] = 0;
                 } else if (val == Player.WHITE.getId()) {
                     blackScore[j][i] = 0;
-                    whiteScore[j][i] = pointEvaluator.scorePoint(j, i, Player.WHITE.getId());
+                    whiteScore[j][i] = scorePoint(j, i, Player.WHITE.getId(), null);
                 } else {
                     throw new IllegalStateException("??");
                 }
             }
         }
+        resetRunningTotal();
     }
 
     @Override
@@ -56,27 +105,137 @@ public class CachedScoreManager implements IScoreManager {
 
     @Override
     public void updateScore(int y, int x) {
+        stamp++;
+        dirtyCount = 0;
+        if (incrementalUpdate) {
+            updateScoreIncremental(y, x);
+        } else {
+            int radius = 10;
+            for (Direction dir : Direction.values()) {
+                for (int i = -radius; i <= radius; i++) {
+                    int ny = y + dir.dy * i;
+                    int nx = x + dir.dx * i;
+                    if (ny < 0 || nx < 0 || ny >= size || nx >= size) continue;
+                    updatePointInDirection(ny, nx, dir);
+                }
+            }
+        }
+        for (int i = 0; i < dirtyCount; i++) {
+            updateContribution(dirtyCells[i]);
+        }
+    }
+
+    private void updateContribution(int idx) {
+        int y = idx / size, x = idx % size;
+        int val = chessBoardAlgo.getValInBoard(x, y);
+        int black = 0, white = 0;
+        if (val == Player.BLACK.getId()) black = blackScore[y][x];
+        else if (val == Player.WHITE.getId()) white = whiteScore[y][x];
+        // 同一格只会计入一种颜色，用正负号区分
+        int old = contribution[idx];
+        if (old > 0) blackTotal -= old;
+        else whiteTotal += old;
+        blackTotal += black;
+        whiteTotal += white;
+        contribution[idx] = black > 0 ? black : -white;
+    }
+
+    private void resetRunningTotal() {
+        blackTotal = 0;
+        whiteTotal = 0;
+        Arrays.fill(contribution, 0);
+        for (int idx = 0; idx < size * size; idx++) {
+            updateContribution(idx);
+        }
+    }
+
+    // 某格在 dir 方向上的分数只取决于从它出发的扫描读到的格子：
+    // 扫描遇到对方棋子就停，第二个空位也一定停，所以中间有对方棋子或两个以上空位时读不到落子点，分数不变
+    private void updateScoreIncremental(int y, int x) {
+        int white = Player.WHITE.getId(), black = Player.BLACK.getId();
+        int val = chessBoardAlgo.getValInBoard(x, y);
+        blackScore[y][x] = val != white ? scorePoint(y, x, black, null) : 0;
+        whiteScore[y][x] = val != black ? scorePoint(y, x, white, null) : 0;
+        markDirty(y, x);
         int radius = 10;
         for (Direction dir : Direction.values()) {
-            for (int i = -radius; i <= radius; i++) {
-                int ny = y + dir.dy * i;
-                int nx = x + dir.dx * i;
-                if (ny < 0 || nx < 0 || ny >= size || nx >= size) continue;
-                updatePointInDirection(ny, nx, dir);
+            int bit = 1 << dir.ordinal(), line = lineIdx(y, x, dir);
+            for (int sign = -1; sign <= 1; sign += 2) {
+                int whiteSeen = 0, blackSeen = 0, emptySeen = 0;
+                for (int i = 1; i <= radius; i++) {
+                    int ny = y + sign * dir.dy * i;
+                    int nx = x + sign * dir.dx * i;
+                    if (ny < 0 || nx < 0 || ny >= size || nx >= size) break;
+                    boolean blackReach = whiteSeen == 0 && emptySeen < 2;
+                    boolean whiteReach = blackSeen == 0 && emptySeen < 2;
+                    if (!blackReach && !whiteReach
+                            && invalidInLine[black][dir.ordinal()][line] == 0
+                            && invalidInLine[white][dir.ordinal()][line] == 0) break;
+                    int role = chessBoardAlgo.getValInBoard(nx, ny);
+                    int idx = convertToIdx(ny, nx, size);
+                    if (role != white && (blackReach || (validDirs[black][idx] & bit) == 0)) {
+                        blackScore[ny][nx] = scorePoint(ny, nx, black, dir);
+                        markDirty(ny, nx);
+                    }
+                    if (role != black && (whiteReach || (validDirs[white][idx] & bit) == 0)) {
+                        whiteScore[ny][nx] = scorePoint(ny, nx, white, dir);
+                        markDirty(ny, nx);
+                    }
+                    if (role == white) whiteSeen++;
+                    else if (role == black) blackSeen++;
+                    else emptySeen++;
+                }
             }
         }
     }
 
+    private int scorePoint(int y, int x, int role, Direction dir) {
+        int idx = convertToIdx(y, x, size);
+        int newly = (dir == null ? 0xF : 1 << dir.ordinal()) & ~validDirs[role][idx];
+        if (newly != 0) {
+            validDirs[role][idx] |= newly;
+            for (Direction d : Direction.values()) {
+                if ((newly & (1 << d.ordinal())) != 0) invalidInLine[role][d.ordinal()][lineIdx(y, x, d)]--;
+            }
+        }
+        return pointEvaluator.scorePoint(y, x, role, dir);
+    }
+
+    private int lineIdx(int y, int x, Direction dir) {
+        switch (dir) {
+            case HORIZONTAL: return y;
+            case VERTICAL: return x;
+            case DIAGONAL: return y - x + size - 1;
+            default: return y + x;
+        }
+    }
+
+    private void markDirty(int y, int x) {
+        int idx = convertToIdx(y, x, size);
+        if (dirtyStamp[idx] == stamp) return;
+        dirtyStamp[idx] = stamp;
+        dirtyCells[dirtyCount++] = idx;
+    }
+
+    public int getDirtyCount() {
+        return dirtyCount;
+    }
+
+    public int getDirtyCell(int i) {
+        return dirtyCells[i];
+    }
+
     private void updatePointInDirection(int y, int x, Direction dir) {
+        markDirty(y, x);
         int role = chessBoardAlgo.getValInBoard(x, y);
         if (role != Player.WHITE.getId()) {
-            int bs = pointEvaluator.scorePoint(y, x, Player.BLACK.getId(), dir);
+            int bs = scorePoint(y, x, Player.BLACK.getId(), dir);
             blackScore[y][x] = bs;
         } else {
             blackScore[y][x] = 0;
         }
         if (role != Player.BLACK.getId()) {
-            int ws = pointEvaluator.scorePoint(y, x, Player.WHITE.getId(), dir);
+            int ws = scorePoint(y, x, Player.WHITE.getId(), dir);
             whiteScore[y][x] = ws;
         } else {
             whiteScore[y][x] = 0;
@@ -93,18 +252,26 @@ public class CachedScoreManager implements IScoreManager {
     }
 
     public List<Integer> generateCandidatePiece(int role, boolean importOnly, int neiDist, int limit) {
-        List<Integer> fives = new ArrayList<>();
-        List<Integer> myFours = new ArrayList<>();
-        List<Integer> enemyFours = new ArrayList<>();
-        List<Integer> myBlockedFours = new ArrayList<>();
-        List<Integer> enemyBlockedFours = new ArrayList<>();
-        List<Integer> myTwoThrees = new ArrayList<>();
-        List<Integer> enemyTwoThrees = new ArrayList<>();
-        List<Integer> myThrees = new ArrayList<>();
-        List<Integer> enemyThrees = new ArrayList<>();
-        List<int[]> myTwos = new ArrayList<>();
-        List<int[]> enemyTwos = new ArrayList<>();
-        List<Integer> ones = new ArrayList<>();
+        if (candidateBuffer == null) candidateBuffer = new int[size * size];
+        int cnt = generateCandidatePiece(role, importOnly, neiDist, limit, candidateBuffer);
+        List<Integer> results = new ArrayList<>(cnt);
+        for (int i = 0; i < cnt; i++) results.add(candidateBuffer[i]);
+        return results;
+    }
+
+    // 和 List 版本同样的优先级和顺序，候选点写进调用方的 buffer（长度至少 size * size），返回个数
+    @Override
+    public int generateCandidatePiece(int role, boolean importOnly, int neiDist, int limit, int[] buffer) {
+        return generateCandidatePiece(role, importOnly, neiDist, limit, buffer, null);
+    }
+
+    @Override
+    public int generateCandidatePiece(int role, boolean importOnly, int neiDist, int limit, int[] buffer, int[] bucketIds) {
+        if (buckets == null) {
+            buckets = new int[BUCKET_COUNT][size * size];
+            twoScores = new int[2][size * size];
+        }
+        Arrays.fill(bucketSize, 0);
         int white = Player.WHITE.getId();
         int[][] myScore = role == white ? whiteScore : blackScore;
         int[][] enemyScore = role == white ? blackScore : whiteScore;
@@ -130,88 +297,126 @@ public class CachedScoreManager implements IScoreManager {
                 int scoreEnemy = enemyScore[y][x];
                 int idx = convertToIdx(y, x, size);
                 if (scoreMe >= Score.FIVE.value || scoreEnemy >= Score.FIVE.value) {
-                    fives.add(idx);
+                    addToBucket(FIVES, idx);
                 } else if (scoreMe >= Score.FOUR.value) {
-                    myFours.add(idx);
+                    addToBucket(MY_FOURS, idx);
                 } else if (scoreEnemy >= Score.FOUR.value) {
-                    enemyFours.add(idx);
+                    addToBucket(ENEMY_FOURS, idx);
                 } else if (scoreMe >= Score.BLOCKED_FOUR.value) {
-                    myBlockedFours.add(idx);
+                    addToBucket(MY_BLOCKED_FOURS, idx);
                 } else if (scoreEnemy >= Score.BLOCKED_FOUR.value) {
-                    enemyBlockedFours.add(idx);
+                    addToBucket(ENEMY_BLOCKED_FOURS, idx);
                 } else if (scoreMe >= 2 * Score.THREE.value) {
-                    myTwoThrees.add(idx);
+                    addToBucket(MY_TWO_THREES, idx);
                 } else if (scoreEnemy >= 2 * Score.THREE.value) {
-                    enemyTwoThrees.add(idx);
+                    addToBucket(ENEMY_TWO_THREES, idx);
                 } else if (scoreMe >= Score.THREE.value) {
-                    myThrees.add(idx);
+                    addToBucket(MY_THREES, idx);
                 } else if (scoreEnemy >= Score.THREE.value) {
-                    enemyThrees.add(idx);
+                    addToBucket(ENEMY_THREES, idx);
                 } else if (scoreMe >= Score.TWO.value / 2) {
-                    myTwos.add(new int[]{idx, scoreMe});
+                    twoScores[0][bucketSize[MY_TWOS]] = scoreMe;
+                    addToBucket(MY_TWOS, idx);
                 } else if (scoreEnemy >= Score.TWO.value / 2) {
-                    enemyTwos.add(new int[]{idx, scoreEnemy});
+                    twoScores[1][bucketSize[ENEMY_TWOS]] = scoreEnemy;
+                    addToBucket(ENEMY_TWOS, idx);
                 } else {
-                    ones.add(idx);
+                    addToBucket(ONES, idx);
                 }
             }
         }
-        if (!fives.isEmpty()) return fives;
+        if (bucketSize[FIVES] > 0) return copyBucket(FIVES, buffer, 0, bucketIds);
 
         // 自己能活四，则直接活四，不考虑冲四
-        if (!myFours.isEmpty()) return myFours;
+        if (bucketSize[MY_FOURS] > 0) return copyBucket(MY_FOURS, buffer, 0, bucketIds);
 
         // 对面有活四，自己冲四都没，
-        if (!enemyFours.isEmpty() && myBlockedFours.isEmpty()) {
+        if (bucketSize[ENEMY_FOURS] > 0 && bucketSize[MY_BLOCKED_FOURS] == 0) {
             // 遇到 XX 0 X 的情况，除了防中间的活四位，也可以防左右的冲四位
-            enemyFours.addAll(enemyBlockedFours);
-            return enemyFours;
+            int cnt = copyBucket(ENEMY_FOURS, buffer, 0, bucketIds);
+            return copyBucket(ENEMY_BLOCKED_FOURS, buffer, cnt, bucketIds);
         }
 
         // 自己没活四，对面有活四且自己有冲四
 
-        if (!enemyFours.isEmpty()) {
-            enemyFours.addAll(myBlockedFours);
-            enemyFours.addAll(enemyBlockedFours);
-            return enemyFours;
+        if (bucketSize[ENEMY_FOURS] > 0) {
+            int cnt = copyBucket(ENEMY_FOURS, buffer, 0, bucketIds);
+            cnt = copyBucket(MY_BLOCKED_FOURS, buffer, cnt, bucketIds);
+            return copyBucket(ENEMY_BLOCKED_FOURS, buffer, cnt, bucketIds);
         }
 
-        List<Integer> results = new ArrayList<>();
-        results.addAll(myTwoThrees);
-        results.addAll(enemyTwoThrees);
-        results.addAll(myBlockedFours);
-        results.addAll(myThrees);
-        if (importOnly && !results.isEmpty()) {
-            return results;
+        int cnt = copyBucket(MY_TWO_THREES, buffer, 0, bucketIds);
+        cnt = copyBucket(ENEMY_TWO_THREES, buffer, cnt, bucketIds);
+        cnt = copyBucket(MY_BLOCKED_FOURS, buffer, cnt, bucketIds);
+        cnt = copyBucket(MY_THREES, buffer, cnt, bucketIds);
+        if (importOnly && cnt > 0) {
+            return cnt;
         }
-        results.addAll(enemyBlockedFours);
-        results.addAll(enemyThrees);
+        cnt = copyBucket(ENEMY_BLOCKED_FOURS, buffer, cnt, bucketIds);
+        cnt = copyBucket(ENEMY_THREES, buffer, cnt, bucketIds);
 
 
-        if (!results.isEmpty() && (!enemyTwoThrees.isEmpty() || !myTwoThrees.isEmpty()))
-            return results;
+        if (cnt > 0 && (bucketSize[ENEMY_TWO_THREES] > 0 || bucketSize[MY_TWO_THREES] > 0))
+            return cnt;
 
-        List<int[]> twos = new ArrayList<>();
-        twos.addAll(myTwos);
-        twos.addAll(enemyTwos);
-        twos.sort((a,b)-> Integer.compare(b[1],a[1]));
-        if (!twos.isEmpty()) {
-            for (int[] i : twos) {
-                results.add(i[0]);
+        int twos = bucketSize[MY_TWOS] + bucketSize[ENEMY_TWOS];
+        if (twos > 0) {
+            // 按分数从高到低稳定排序，同分保持自己的在前、扫描顺序
+            int[] scores = twoScores[0];
+            System.arraycopy(twoScores[1], 0, scores, bucketSize[MY_TWOS], bucketSize[ENEMY_TWOS]);
+            int start = cnt;
+            cnt = copyBucket(MY_TWOS, buffer, cnt, bucketIds);
+            cnt = copyBucket(ENEMY_TWOS, buffer, cnt, bucketIds);
+            // 两个二的分桶排序后混在一起，算作同一个分桶
+            if (bucketIds != null) Arrays.fill(bucketIds, start, cnt, MY_TWOS);
+            for (int i = 1; i < twos; i++) {
+                int idx = buffer[start + i], score = scores[i], j = i;
+                while (j > 0 && scores[j - 1] < score) {
+                    scores[j] = scores[j - 1];
+                    buffer[start + j] = buffer[start + j - 1];
+                    j--;
+                }
+                scores[j] = score;
+                buffer[start + j] = idx;
             }
         } else {
-            results.addAll(ones);
+            cnt = copyBucket(ONES, buffer, cnt, bucketIds);
+        }
+        if (cnt > limit) return limit;
+        if (cnt == 0 && chessBoardAlgo.getValInBoard(size / 2, size / 2) == 0) {
+            buffer[0] = convertToIdx(size / 2, size / 2, size);
+            if (bucketIds != null) bucketIds[0] = ONES;
+            return 1;
         }
-        if (results.size() > limit) return results.subList(0, limit);
-        return (results.isEmpty() && chessBoardAlgo.getValInBoard(size / 2, size / 2) == 0)
-                ?
-                List.of(convertToIdx(size / 2, size / 2, size))
-                :
-                results;
+        return cnt;
+    }
+
+    private void addToBucket(int bucket, int idx) {
+        buckets[bucket][bucketSize[bucket]++] = idx;
+    }
+
+    private int copyBucket(int bucket, int[] buffer, int offset, int[] bucketIds) {
+        System.arraycopy(buckets[bucket], 0, buffer, offset, bucketSize[bucket]);
+        if (bucketIds != null) Arrays.fill(bucketIds, offset, offset + bucketSize[bucket], bucket);
+        return offset + bucketSize[bucket];
     }
 
     @Override
     public int evaluation(boolean isAI, int humanColor) {
+        if (checkRunningTotal) checkRunningTotal();
+        int blackMaxScore = blackTotal, whiteMaxScore = whiteTotal;
+        if (isAI) {
+            if (humanColor != Player.BLACK.getId())
+                return blackMaxScore - whiteMaxScore;
+            else return whiteMaxScore - blackMaxScore;
+        } else {
+            if (humanColor == Player.BLACK.getId())
+                return blackMaxScore - whiteMaxScore;
+            else return whiteMaxScore - blackMaxScore;
+        }
+    }
+
+    private void checkRunningTotal() {
         int blackMaxScore = 0, whiteMaxScore = 0;
         for (int i = 0; i < size; i++) {
             for (int j = 0; j < size; j++) {
@@ -222,14 +427,9 @@ public class CachedScoreManager implements IScoreManager {
                 }
             }
         }
-        if (isAI) {
-            if (humanColor != Player.BLACK.getId())
-                return blackMaxScore - whiteMaxScore;
-            else return whiteMaxScore - blackMaxScore;
-        } else {
-            if (humanColor == Player.BLACK.getId())
-                return blackMaxScore - whiteMaxScore;
-            else return whiteMaxScore - blackMaxScore;
+        if (blackMaxScore != blackTotal || whiteMaxScore != whiteTotal) {
+            throw new IllegalStateException(String.format("running total mismatch, black %d/%d, white %d/%d",
+                    blackTotal, blackMaxScore, whiteTotal, whiteMaxScore));
         }
     }
 }
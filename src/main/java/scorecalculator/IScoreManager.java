@@ -7,6 +7,11 @@ public interface IScoreManager {
 
     List<Integer> generateCandidatePiece(int role);
 
+    int generateCandidatePiece(int role, boolean importOnly, int neiDist, int limit, int[] buffer);
+
+    // bucketIds 不为空时同时写入每个候选点所在的优先级分桶，同一分桶的候选点在 buffer 中连续
+    int generateCandidatePiece(int role, boolean importOnly, int neiDist, int limit, int[] buffer, int[] bucketIds);
+
     void updateScore(int y, int x);
 
     void initScore();
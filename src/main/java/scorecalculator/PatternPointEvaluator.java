@@ -0,0 +1,160 @@
+package scorecalculator;
+
+import chessboardalgo.ChessboardBitboardAlgo;
+import chessboardalgo.IChessboardAIAlgo;
+
+// 查表版 PointEvaluator, 分数和逐格扫描版完全一致
+// 一个方向的分数 = f(左侧扫描结果, 右侧扫描结果)，单侧最多只会影响到 9 格以内：
+// 近端连子 >= 4 或 跳一格后的远端连子 >= 5 时都已经是成五
+// 所以把单侧 9 格编码成 (己方位图 | 阻挡位图 << 9)，先查出单侧结果编号，再查两侧组合的分数
+public class PatternPointEvaluator extends PointEvaluator {
+    public static final int SIDE_LEN = 9;
+    private static final int SIDE_MASK = (1 << SIDE_LEN) - 1;
+    // 单侧编码 -> 单侧结果编号
+    private static final byte[] SIDE_ID = new byte[1 << (2 * SIDE_LEN)];
+    // 左侧编号 * SIDE_COUNT + 右侧编号 -> 分数
+    private static final int[] PAIR_SCORE;
+    private static final int SIDE_COUNT;
+
+    static {
+        // (near, far, gap, block) -> 编号
+        int[] tupleToId = new int[(SIDE_LEN + 1) * (SIDE_LEN + 1) * 4];
+        int[] idToTuple = new int[tupleToId.length];
+        java.util.Arrays.fill(tupleToId, -1);
+        int count = 0;
+        for (int key = 0; key < SIDE_ID.length; key++) {
+            int mine = key & SIDE_MASK, blocked = key >>> SIDE_LEN;
+            if ((mine & blocked) != 0) continue;
+            int tuple = scanSide(mine, blocked);
+            if (tupleToId[tuple] == -1) {
+                idToTuple[count] = tuple;
+                tupleToId[tuple] = count++;
+            }
+            SIDE_ID[key] = (byte) tupleToId[tuple];
+        }
+        SIDE_COUNT = count;
+        PAIR_SCORE = new int[count * count];
+        for (int l = 0; l < count; l++) {
+            int lt = idToTuple[l];
+            int lNear = near(lt), lFar = far(lt);
+            for (int r = 0; r < count; r++) {
+                int rt = idToTuple[r];
+                int rNear = near(rt), rFar = far(rt);
+                // 还原成 PointEvaluator 里左右两侧各自的计数方式
+                PAIR_SCORE[l * count + r] = countToScore(
+                        lNear + lFar, gap(lt) ? lFar : -1, block(lt),
+                        rNear + rFar, gap(rt) ? rNear : -1, block(rt));
+            }
+        }
+    }
+
+    // 和 PointEvaluator 单侧扫描同样的规则，窗口外视为阻挡
+    private static int scanSide(int mine, int blocked) {
+        int near = 0, far = 0;
+        boolean gap = false, block = false;
+        for (int j = 0; true; j++) {
+            if (j >= SIDE_LEN || ((blocked >>> j) & 1) != 0) {
+                block = true;
+                break;
+            }
+            if (((mine >>> j) & 1) != 0) {
+                if (gap) far++;
+                else near++;
+                continue;
+            }
+            if (!gap && j + 1 < SIDE_LEN && ((mine >>> (j + 1)) & 1) != 0) {
+                gap = true;
+                continue;
+            }
+            break;
+        }
+        return (((near * (SIDE_LEN + 1)) + far) << 2) | (gap ? 2 : 0) | (block ? 1 : 0);
+    }
+
+    private static int near(int tuple) {
+        return (tuple >>> 2) / (SIDE_LEN + 1);
+    }
+
+    private static int far(int tuple) {
+        return (tuple >>> 2) % (SIDE_LEN + 1);
+    }
+
+    private static boolean gap(int tuple) {
+        return (tuple & 2) != 0;
+    }
+
+    private static boolean block(int tuple) {
+        return (tuple & 1) != 0;
+    }
+
+    private final ChessboardBitboardAlgo bitboard;
+
+    public PatternPointEvaluator(int size, IChessboardAIAlgo chessBoardAlgo, int[][][][] scoreCache) {
+        super(size, chessBoardAlgo, scoreCache);
+        bitboard = chessBoardAlgo instanceof ChessboardBitboardAlgo ? (ChessboardBitboardAlgo) chessBoardAlgo : null;
+    }
+
+    @Override
+    public int scorePoint(int y, int x, int role, Direction requiredDir) {
+        int result = 0;
+        for (Direction curDir : Direction.values()) {
+            if (!curDir.match(requiredDir)) {
+                result += scoreCache[role][curDir.ordinal()][y][x];
+                continue;
+            }
+            int score = bitboard != null ? scoreByBitboard(y, x, role, curDir) : scoreByScan(y, x, role, curDir);
+            scoreCache[role][curDir.ordinal()][y][x] = score;
+            result += score;
+        }
+        return result;
+    }
+
+    public static int lookup(int leftKey, int rightKey) {
+        return PAIR_SCORE[SIDE_ID[leftKey] * SIDE_COUNT + SIDE_ID[rightKey]];
+    }
+
+    private int scoreByBitboard(int y, int x, int role, Direction dir) {
+        int o = dir.ordinal();
+        long mine = bitboard.getLine(o, role, y, x);
+        long blocked = bitboard.getLine(o, 3 - role, y, x) | ~bitboard.getLineMask(o, y, x);
+        int p = ChessboardBitboardAlgo.getLineBit(o, y, x);
+        int rightKey = (int) ((mine >>> (p + 1)) & SIDE_MASK) | (int) ((blocked >>> (p + 1)) & SIDE_MASK) << SIDE_LEN;
+        int leftKey;
+        if (p == 0) {
+            leftKey = SIDE_MASK << SIDE_LEN;
+        } else {
+            int leftMine = (int) ((Long.reverse(mine) >>> (64 - p)) & SIDE_MASK);
+            int leftBlocked = (int) ((Long.reverse(blocked) >>> (64 - p)) & SIDE_MASK) | ((SIDE_MASK << p) & SIDE_MASK);
+            leftKey = leftMine | leftBlocked << SIDE_LEN;
+        }
+        return lookup(leftKey, rightKey);
+    }
+
+    private int scoreByScan(int y, int x, int role, Direction dir) {
+        return lookup(sideKey(y, x, role, -dir.dy, -dir.dx), sideKey(y, x, role, dir.dy, dir.dx));
+    }
+
+    // 读到扫描终止为止，没读到的格子按空位编码，不影响查表结果
+    private int sideKey(int y, int x, int role, int dy, int dx) {
+        int key = 0;
+        boolean seenEmpty = false;
+        for (int j = 0; j < SIDE_LEN; j++) {
+            int ny = y + (j + 1) * dy, nx = x + (j + 1) * dx;
+            if (ny < 0 || nx < 0 || ny >= size || nx >= size) {
+                key |= 1 << (j + SIDE_LEN);
+                break;
+            }
+            int val = chessBoardAlgo.getValInBoard(nx, ny);
+            if (val == role) {
+                key |= 1 << j;
+            } else if (val != 0) {
+                key |= 1 << (j + SIDE_LEN);
+                break;
+            } else {
+                if (seenEmpty) break;
+                seenEmpty = true;
+            }
+        }
+        return key;
+    }
+}
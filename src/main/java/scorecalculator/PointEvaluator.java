@@ -3,9 +3,9 @@ package scorecalculator;
 import chessboardalgo.IChessboardAIAlgo;
 
 public class PointEvaluator {
-    private int size;
-    private IChessboardAIAlgo chessBoardAlgo;
-    private int[][][][] scoreCache;
+    protected int size;
+    protected IChessboardAIAlgo chessBoardAlgo;
+    protected int[][][][] scoreCache;
     private int leftEmptyPos = -1, rightEmptyPos = -1, leftCnt = 0, rightCnt = 0;
     private boolean leftBlock = false, rightBlock = false;
 
@@ -84,6 +84,11 @@ public class PointEvaluator {
     }
 
     private int countToScore() {
+        return countToScore(leftCnt, leftEmptyPos, leftBlock, rightCnt, rightEmptyPos, rightBlock);
+    }
+
+    static int countToScore(int leftCnt, int leftEmptyPos, boolean leftBlock,
+                            int rightCnt, int rightEmptyPos, boolean rightBlock) {
         if (leftEmptyPos == -1 && rightEmptyPos == -1) {
             int count = leftCnt + rightCnt + 1;
             if (count >= 5) return Score.FIVE.value;
@@ -0,0 +1,7 @@
+package scorecalculator;
+
+import chessboardalgo.IChessboardAIAlgo;
+
+public interface PointEvaluatorFactory {
+    PointEvaluator create(int size, IChessboardAIAlgo chessBoardAlgo, int[][][][] scoreCache);
+}
@@ -5,7 +5,6 @@ import player.Player;
 import aialgo.vcx.VCXOptimization;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 import static common.PositionConverter.*;
@@ -15,6 +14,7 @@ public class VCXCachedScoreManager extends CachedScoreManager {
     private int[][] aiScore;
     private int[][] humanScore;
     private final VCXOptimization killOptimization;
+    private long[][] scratch;
 
     public VCXCachedScoreManager(IChessboardAIAlgo chessBoardAIAlgo, int humanColor, VCXOptimization vcxOptimization) {
         super(chessBoardAIAlgo);
@@ -24,17 +24,24 @@ public class VCXCachedScoreManager extends CachedScoreManager {
     }
 
     public List<Long> findAIKillSteps(int lastMaxPoint) {
-        List<Long> results = new ArrayList<>();
-        List<Long> fives = new LinkedList<>();
+        long[] buffer = new long[size * size];
+        return toList(buffer, findAIKillSteps(lastMaxPoint, buffer));
+    }
+
+    // 结果写进 buffer（长度至少 size * size），返回个数
+    public int findAIKillSteps(int lastMaxPoint, long[] buffer) {
+        int cnt = 0, fiveCnt = 0;
+        long[] fives = scratch(0);
 
         for (int y = 0; y < size; y++) {
             for (int x = 0; x < size; x++) {
                 if (chessBoardAlgo.getValInBoard(x, y) != 0) continue;
                 int pos = convertToIdx(y, x, size);
                 if (aiScore[y][x] >= Score.FIVE.value) {
-                    return List.of(encode(aiScore[y][x], pos));
+                    buffer[0] = encode(aiScore[y][x], pos);
+                    return 1;
                 } else if (humanScore[y][x] >= Score.FIVE.value) {
-                    fives.add(encode(-humanScore[y][x], pos));
+                    fives[fiveCnt++] = encode(-humanScore[y][x], pos);
                 } else {
                     if (lastMaxPoint == -1
                             || y == getY(lastMaxPoint, size)
@@ -42,55 +49,90 @@ public class VCXCachedScoreManager extends CachedScoreManager {
                             || Math.abs(y - getY(lastMaxPoint, size)) == Math.abs(x - getX(lastMaxPoint, size))) {
                         // 连续进攻
                         if (aiScore[y][x] >= Score.THREE.value)
-                            results.add(encode(aiScore[y][x], pos));
+                            buffer[cnt++] = encode(aiScore[y][x], pos);
                     } else if (humanScore[y][x] >= Score.FOUR.value && aiScore[y][x] >= Score.THREE.value) {
                         // 连守带攻
-                        results.add(encode(aiScore[y][x], pos));
+                        buffer[cnt++] = encode(aiScore[y][x], pos);
                     } else if (killOptimization.matchKillSteps(aiScore[y][x])) {
-                        results.add(encode(aiScore[y][x], pos));
+                        buffer[cnt++] = encode(aiScore[y][x], pos);
                     }
                 }
             }
         }
-        if (!fives.isEmpty()) return fives;
-        results.sort((a, b)-> Integer.compare(score(b), score(a)));
-        return results;
+        if (fiveCnt > 0) {
+            System.arraycopy(fives, 0, buffer, 0, fiveCnt);
+            return fiveCnt;
+        }
+        // 按分数从高到低稳定排序
+        for (int i = 1; i < cnt; i++) {
+            long p = buffer[i];
+            int j = i;
+            while (j > 0 && score(buffer[j - 1]) < score(p)) {
+                buffer[j] = buffer[j - 1];
+                j--;
+            }
+            buffer[j] = p;
+        }
+        return cnt;
     }
 
-
-
     public List<Long> findHumanDefendSteps(int lastAIMaxPointScore) {
-        List<Long> fives = new ArrayList<>();
-        LinkedList<Long> fours = new LinkedList<>();
-        List<Long> blockedFours = new ArrayList<>();
+        long[] buffer = new long[size * size];
+        return toList(buffer, findHumanDefendSteps(lastAIMaxPointScore, buffer));
+    }
+
+    public int findHumanDefendSteps(int lastAIMaxPointScore, long[] buffer) {
+        long[] fives = scratch(0), humanFours = scratch(1), blockedFours = scratch(2);
+        int fiveCnt = 0, humanFourCnt = 0, blockedFourCnt = 0;
+        // 先把其余的四放在 buffer 里，最后再把对面的活四倒序插到前面
+        int otherFourCnt = 0;
         for (int y = 0; y < size; y++) {
             for (int x = 0; x < size; x++) {
                 if (chessBoardAlgo.getValInBoard(x, y) != 0) continue;
                 int pos = convertToIdx(y, x, size), hs = humanScore[y][x], as = aiScore[y][x];
                 if (hs >= Score.FIVE.value) {
-                    return List.of(encode(-hs, pos));
+                    buffer[0] = encode(-hs, pos);
+                    return 1;
                 }
                 if (as >= Score.FIVE.value) {
-                    fives.add(encode(as, pos));
+                    fives[fiveCnt++] = encode(as, pos);
                 } else if (hs >= Score.FOUR.value) {
-                    fours.addFirst(encode(-hs, pos));
+                    humanFours[humanFourCnt++] = encode(-hs, pos);
                 } else if (as >= Score.FOUR.value) {
-                    fours.add(encode(as, pos));
+                    buffer[otherFourCnt++] = encode(as, pos);
                 } else if (hs >= Score.BLOCKED_FOUR.value) {
-                    fours.add(encode(-hs, pos));
+                    buffer[otherFourCnt++] = encode(-hs, pos);
                 } else if (as >= Score.BLOCKED_FOUR.value) {
-                    blockedFours.add(encode(as, pos));
+                    blockedFours[blockedFourCnt++] = encode(as, pos);
                 }
             }
         }
         // 挡对面的冲四
-        if (!fives.isEmpty()) return fives;
+        if (fiveCnt > 0) {
+            System.arraycopy(fives, 0, buffer, 0, fiveCnt);
+            return fiveCnt;
+        }
+        int fourCnt = humanFourCnt + otherFourCnt;
+        if (fourCnt == 0) return 0;
         // 形成自己的活四，挡对面的活三, 形成自己的冲四
-        if (!fours.isEmpty()) {
-            // 有时对面的杀棋，是活三的一个冲四位而非活四位
-            fours.addAll(blockedFours);
+        System.arraycopy(buffer, 0, buffer, humanFourCnt, otherFourCnt);
+        for (int i = 0; i < humanFourCnt; i++) {
+            buffer[i] = humanFours[humanFourCnt - 1 - i];
         }
-        return fours;
+        // 有时对面的杀棋，是活三的一个冲四位而非活四位
+        System.arraycopy(blockedFours, 0, buffer, fourCnt, blockedFourCnt);
+        return fourCnt + blockedFourCnt;
+    }
+
+    private long[] scratch(int i) {
+        if (scratch == null) scratch = new long[3][size * size];
+        return scratch[i];
+    }
+
+    private static List<Long> toList(long[] buffer, int cnt) {
+        List<Long> results = new ArrayList<>(cnt);
+        for (int i = 0; i < cnt; i++) results.add(buffer[i]);
+        return results;
     }
 
     public static long encode(int score, int pos) {
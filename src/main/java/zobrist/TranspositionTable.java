@@ -0,0 +1,112 @@
+package zobrist;
+
+import java.util.Arrays;
+
+// 定长置换表，每个 bucket 两个槽：槽 0 深度优先替换，槽 1 总是替换
+// 每个槽两个 long: (key ^ data, data)，读的时候用 key 校验，多线程无锁读写时读到撕裂的槽只会当成未命中
+public class TranspositionTable {
+    public static final int EXACT = 0, LOWER = 1, UPPER = 2;
+    public static final long MISS = 0;
+
+    // data: 低 32 位分数，32-39 深度，40-41 bound，42-51 最佳着法 + 1，52-59 写入时的代数，63 位恒为 1 用来区分空槽
+    private static final int DEPTH_SHIFT = 32, BOUND_SHIFT = 40, MOVE_SHIFT = 42, GENERATION_SHIFT = 52;
+    private static final long VALID = 1L << 63, GENERATION_MASK = 0xffL << GENERATION_SHIFT;
+
+    // 第一次写入时才分配，只创建不搜索的实例不占内存
+    private volatile long[] table;
+    private final int bucketMask;
+    // 每次搜索开始加一，旧代的条目仍然可以命中，但替换时不再受深度优先保护
+    private volatile int generation = 0;
+
+    public TranspositionTable(int sizeInMB) {
+        if (sizeInMB <= 0) throw new IllegalArgumentException("table size must be positive, got " + sizeInMB);
+        // 每个 bucket 4 个 long 共 32 字节
+        long buckets = Long.highestOneBit((long) sizeInMB * 1024 * 1024 / 32);
+        if (buckets > (1 << 28)) throw new IllegalArgumentException("table size too large: " + sizeInMB + "MB");
+        bucketMask = (int) buckets - 1;
+    }
+
+    private synchronized long[] allocate() {
+        if (table == null) table = new long[(bucketMask + 1) * 4];
+        return table;
+    }
+
+    public static long pack(int score, int depth, int bound) {
+        return pack(score, depth, bound, -1);
+    }
+
+    // move 为 -1 表示没有最佳着法
+    public static long pack(int score, int depth, int bound, int move) {
+        assert depth >= 0 && depth < 256 && move >= -1 && move < 1023;
+        return VALID | ((long) (move + 1) << MOVE_SHIFT) | ((long) bound << BOUND_SHIFT)
+                | ((long) depth << DEPTH_SHIFT) | (score & 0xffffffffL);
+    }
+
+    public static int score(long data) {
+        return (int) data;
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xff;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    public static int move(long data) {
+        return (int) (data >>> MOVE_SHIFT & 0x3ff) - 1;
+    }
+
+    public static long withMove(long data, int move) {
+        return (data & ~(0x3ffL << MOVE_SHIFT)) | ((long) (move + 1) << MOVE_SHIFT);
+    }
+
+    public static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & 0xff;
+    }
+
+    public void newSearch() {
+        generation = (generation + 1) & 0xff;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    // 未命中返回 MISS
+    public long probe(long key) {
+        long[] table = this.table;
+        if (table == null) return MISS;
+        int base = ((int) key & bucketMask) << 2;
+        for (int slot = base; slot < base + 4; slot += 2) {
+            long data = table[slot + 1];
+            if (data != MISS && (table[slot] ^ data) == key) return data;
+        }
+        return MISS;
+    }
+
+    public void store(long key, long data) {
+        long[] table = this.table;
+        if (table == null) table = allocate();
+        int gen = generation;
+        data = (data & ~GENERATION_MASK) | ((long) gen << GENERATION_SHIFT);
+        int base = ((int) key & bucketMask) << 2;
+        long old = table[base + 1];
+        int slot = base;
+        if (old != MISS && (table[base] ^ old) != key && generation(old) == gen && depth(data) < depth(old)) {
+            slot = base + 2;
+        }
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+    }
+
+    public void clear() {
+        long[] table = this.table;
+        if (table != null) Arrays.fill(table, 0);
+    }
+
+    public int capacity() {
+        return (bucketMask + 1) * 2;
+    }
+}
@@ -3,78 +3,217 @@ package zobrist;
 import chessboardalgo.IChessboardAIAlgo;
 import lombok.Getter;
 
-import java.security.SecureRandom;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Zobrist {
     public static int DISABLE_CACHE_MASK = 100_000_000;
+    public static final int DEFAULT_TABLE_SIZE_MB = 16;
+    // 打开后同一 JVM 里的对局共用置换表，换局后之前算过的局面仍然能命中
+    public static boolean persistAcrossGames = false;
+    private static final Map<Integer, TranspositionTable> SHARED_TABLES = new HashMap<>();
+    // 所有实例共用的随机数表，按棋盘大小由种子确定性生成，不同实例、不同进程的 hash 可以直接比较
+    private static volatile long keySeed = 0x2545F4914F6CDD1DL;
+    private static final Map<Integer, long[]> KEYS = new ConcurrentHashMap<>();
     private final long[] zobristTable;
     @Getter
-    private Map<Long, ResultAndDepth> transpositionTable;
+    private TranspositionTable transpositionTable;
 
-    @Getter
     private long hash = 0;
+    // 对称模式：同时维护 8 种旋转/翻转下的 hash，用最小的那个作为 key，
+    // 最佳着法按取到最小值的那个变换存进置换表，读出来时再变换回来
+    public static boolean defaultSymmetric = false;
+    private final boolean symmetric;
+    private long[] symmetricHashes;
+    private int canonical = 0;
+    // symmetricIdx[t][idx]: 格子 idx 经过变换 t 之后的位置，inverseIdx 为逆变换
+    private int[][] symmetricIdx, inverseIdx;
+    private static final Map<Integer, int[][][]> SYMMETRY_TABLES = new HashMap<>();
 
     @Getter
     private int cacheMatch = 0;
 
     private int size;
+    // fork 出来的实例不推进置换表的代数
+    private final boolean forked;
+
     public Zobrist(IChessboardAIAlgo chessBoardAlgo) {
+        this(chessBoardAlgo, DEFAULT_TABLE_SIZE_MB);
+    }
+
+    // 置换表在第一次写入时才按 tableSizeMB 分配
+    public Zobrist(IChessboardAIAlgo chessBoardAlgo, int tableSizeMB) {
+        this(chessBoardAlgo, new TranspositionTable(tableSizeMB));
+    }
+
+    public static Zobrist create(IChessboardAIAlgo chessBoardAlgo) {
+        return create(chessBoardAlgo, DEFAULT_TABLE_SIZE_MB);
+    }
+
+    public static Zobrist create(IChessboardAIAlgo chessBoardAlgo, int tableSizeMB) {
+        if (!persistAcrossGames) return new Zobrist(chessBoardAlgo, tableSizeMB);
+        TranspositionTable shared;
+        synchronized (SHARED_TABLES) {
+            shared = SHARED_TABLES.computeIfAbsent(chessBoardAlgo.getSize(), size -> new TranspositionTable(tableSizeMB));
+        }
+        return new Zobrist(chessBoardAlgo, shared);
+    }
+
+    public Zobrist(IChessboardAIAlgo chessBoardAlgo, TranspositionTable transpositionTable) {
         size = chessBoardAlgo.getSize();
-        zobristTable = new long[size * size * 2];
-        transpositionTable = new HashMap<>();
-        SecureRandom secureRandom = new SecureRandom();
-        for (int i = 0; i < zobristTable.length; i++) {
-            zobristTable[i] = secureRandom.nextLong();
+        zobristTable = keys(size);
+        this.transpositionTable = transpositionTable;
+        forked = false;
+        symmetric = defaultSymmetric;
+        calculateInitialHash(chessBoardAlgo);
+    }
+
+    // 换种子后之前的 hash 和共享置换表都作废，只应在开始搜索前调用
+    public static void setKeySeed(long seed) {
+        synchronized (SHARED_TABLES) {
+            keySeed = seed;
+            KEYS.clear();
+            SHARED_TABLES.clear();
         }
+    }
+
+    // keys[idx * 2 + color - 1]
+    public static long[] keys(int size) {
+        return KEYS.computeIfAbsent(size, n -> {
+            // SplitMix64
+            long state = keySeed ^ n;
+            long[] keys = new long[n * n * 2];
+            for (int i = 0; i < keys.length; i++) {
+                long z = (state += 0x9E3779B97F4A7C15L);
+                z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+                z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+                keys[i] = z ^ (z >>> 31);
+            }
+            return keys;
+        });
+    }
+
+    private Zobrist(Zobrist other, IChessboardAIAlgo chessBoardAlgo, boolean forked) {
+        size = other.size;
+        zobristTable = other.zobristTable;
+        transpositionTable = other.transpositionTable;
+        this.forked = forked;
+        symmetric = other.symmetric;
         calculateInitialHash(chessBoardAlgo);
     }
 
+    // 同一套随机数和置换表，用于多线程共享置换表搜索
+    public Zobrist fork(IChessboardAIAlgo chessBoardAlgo) {
+        return new Zobrist(this, chessBoardAlgo, true);
+    }
+
+    // 同一套随机数和置换表，和当前实例轮流搜索（比如后台思考），自己也推进代数
+    public Zobrist share(IChessboardAIAlgo chessBoardAlgo) {
+        return new Zobrist(this, chessBoardAlgo, false);
+    }
+
+    // 新的一步开始搜索，之前的条目变成旧代
+    public void newSearch() {
+        if (!forked) transpositionTable.newSearch();
+    }
+
     public void updateHash(int y, int x, int role) {
         if (role < 1 || role > 2) {
             throw new IllegalArgumentException("Invalid move");
         }
-        hash ^= zobristTable[(y * size + x) * 2 + (role - 1)];
+        int i = y * size + x;
+        if (!symmetric) {
+            hash ^= zobristTable[(i << 1) + (role - 1)];
+            return;
+        }
+        int best = 0;
+        for (int t = 0; t < 8; t++) {
+            symmetricHashes[t] ^= zobristTable[(symmetricIdx[t][i] << 1) + (role - 1)];
+            if (symmetricHashes[t] < symmetricHashes[best]) best = t;
+        }
+        canonical = best;
+        hash = symmetricHashes[best];
     }
 
     private void calculateInitialHash(IChessboardAIAlgo chessBoardAlgo) {
+        if (symmetric) {
+            int[][][] tables = symmetryTables(size);
+            symmetricIdx = tables[0];
+            inverseIdx = tables[1];
+            symmetricHashes = new long[8];
+        }
         for (int y = 0; y < size; y++) {
             for (int x = 0; x < size; x++) {
-                int i = y * size + x;
                 int val = chessBoardAlgo.getValInBoard(x, y);
-                if (val != 0) {
-                    hash ^= zobristTable[(i << 1) + (val - 1)];
-                }
+                if (val != 0) updateHash(y, x, val);
             }
         }
     }
 
+    // 变换 t: 第 0 位交换 x/y，第 1 位上下翻转，第 2 位左右翻转，组合起来正好是正方形的 8 种对称
+    private static int[][][] symmetryTables(int size) {
+        synchronized (SYMMETRY_TABLES) {
+            return SYMMETRY_TABLES.computeIfAbsent(size, n -> {
+                int[][] forward = new int[8][n * n], inverse = new int[8][n * n];
+                for (int t = 0; t < 8; t++) {
+                    for (int y = 0; y < n; y++) {
+                        for (int x = 0; x < n; x++) {
+                            int ty = (t & 1) != 0 ? x : y, tx = (t & 1) != 0 ? y : x;
+                            if ((t & 2) != 0) ty = n - 1 - ty;
+                            if ((t & 4) != 0) tx = n - 1 - tx;
+                            forward[t][y * n + x] = ty * n + tx;
+                            inverse[t][ty * n + tx] = y * n + x;
+                        }
+                    }
+                }
+                return new int[][][]{forward, inverse};
+            });
+        }
+    }
+
+    // 对称模式下返回 8 个 hash 中最小的那个
+    public long getHash() {
+        return hash;
+    }
+
     public Optional<Integer> tryGet(int depth) {
-        if (!transpositionTable.containsKey(hash)) return Optional.empty();
-        ResultAndDepth scoreAndDepth = transpositionTable.get(hash);
-        if (scoreAndDepth.depth >= depth) {
+        long data = transpositionTable.probe(hash);
+        if (data == TranspositionTable.MISS) return Optional.empty();
+        if (TranspositionTable.depth(data) >= depth) {
             cacheMatch++;
-            return Optional.of(scoreAndDepth.result);
+            return Optional.of(TranspositionTable.score(data));
         }
         return Optional.empty();
     }
 
     public int setAndReturnScore(int result, int depth) {
-        if (Math.abs(result) != DISABLE_CACHE_MASK)
-            transpositionTable.put(hash, new ResultAndDepth(result, depth));
-        return result;
+        return setAndReturnScore(result, depth, TranspositionTable.EXACT, -1);
     }
 
-    private class ResultAndDepth {
-        int result;
-        int depth;
+    // 着法在当前局面坐标系和 hash 所在的坐标系之间转换，非对称模式下不变
+    public int toCanonical(int move) {
+        return symmetric && move >= 0 ? symmetricIdx[canonical][move] : move;
+    }
 
-        public ResultAndDepth(int result, int depth) {
-            this.result = result;
-            this.depth = depth;
-        }
+    public int fromCanonical(int move) {
+        return symmetric && move >= 0 ? inverseIdx[canonical][move] : move;
     }
 
+    public int setAndReturnScore(int result, int depth, int bound, int bestMove) {
+        bestMove = toCanonical(bestMove);
+        if (Math.abs(result) != DISABLE_CACHE_MASK)
+            transpositionTable.store(hash, TranspositionTable.pack(result, depth, bound, bestMove));
+        return result;
+    }
+
+    // 返回当前局面的置换表条目，未命中为 TranspositionTable.MISS
+    public long probe() {
+        long data = transpositionTable.probe(hash);
+        if (data == TranspositionTable.MISS) return data;
+        cacheMatch++;
+        if (symmetric) data = TranspositionTable.withMove(data, fromCanonical(TranspositionTable.move(data)));
+        return data;
+    }
 }
@@ -1,6 +1,9 @@
 package almostwin;
 
 import aialgo.almostwin.AlmostPNSWin;
+import aialgo.almostwin.proofnumbersearch.Node;
+import aialgo.almostwin.proofnumbersearch.ProofNumberSearch;
+import chessboardalgo.IChessboardAIAlgo;
 import chessboardalgo.ChessboardByteArrayAlgo;
 import chessboardalgo.IChessboardAlgo;
 import common.Position;
@@ -12,12 +15,18 @@ import static vcx.VCXTest.debugInit;
 
 public class AlmostPNSWinTest {
     public Position testAlmostPNSTemplate(String input, int time, int count, int depth) {
+        return testAlmostPNSTemplate(input, time, count, depth, false, false);
+    }
+
+    public Position testAlmostPNSTemplate(String input, int time, int count, int depth, boolean depthFirst, boolean incremental) {
         IChessboardAlgo chessboard = new ChessboardByteArrayAlgo(15);
         debugInit(chessboard, input);
         chessboard.generateStepsCode();
         int human = Player.WHITE.getId();
 
         AlmostPNSWin apns = new AlmostPNSWin(chessboard, human, time, count, depth);
+        apns.setDepthFirst(depthFirst);
+        apns.setIncremental(incremental);
         Position res = apns.aiFindPos();
         return res;
     }
@@ -29,4 +38,69 @@ public class AlmostPNSWinTest {
                 testAlmostPNSTemplate("H8 I8 I9 G7 J9 K9 Ha H9 Ga J8 Ia Ja ", 600_000, 180_000, 9)
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCase1DepthFirst() {
+        Assert.assertEquals(
+                new Position(4, 7),
+                testAlmostPNSTemplate("H8 I8 I9 G7 J9 K9 Ha H9 Ga J8 Ia Ja ", 600_000, 180_000, 9, true, false)
+        );
+    }
+
+    @Test
+    public void testCase1Incremental() {
+        Assert.assertEquals(
+                new Position(4, 7),
+                testAlmostPNSTemplate("H8 I8 I9 G7 J9 K9 Ha H9 Ga J8 Ia Ja ", 600_000, 180_000, 9, false, true)
+        );
+    }
+
+    @Test
+    public void testCase1Parallel() {
+        IChessboardAlgo chessboard = new ChessboardByteArrayAlgo(15);
+        debugInit(chessboard, "H8 I8 I9 G7 J9 K9 Ha H9 Ga J8 Ia Ja ");
+        chessboard.generateStepsCode();
+        AlmostPNSWin apns = new AlmostPNSWin(chessboard, Player.WHITE.getId(), 600_000, 180_000, 9);
+        apns.setThreads(4);
+        Assert.assertEquals(new Position(4, 7), apns.aiFindPos());
+    }
+
+    // 同样的时间预算下对比串行和并行展开的叶子数和直接得出结论的叶子数
+    @Test
+    public void testParallelThroughput() {
+        for (int threads : new int[]{1, 4}) {
+            IChessboardAlgo chessboard = new ChessboardByteArrayAlgo(15);
+            debugInit(chessboard, "H8 I8 I9 G7 J9 K9 Ha H9 Ga J8 Ia Ja ");
+            chessboard.generateStepsCode();
+            AlmostPNSWin apns = new AlmostPNSWin(chessboard, Player.WHITE.getId(), 5_000, 180_000, 9);
+            apns.setThreads(threads);
+            apns.aiFindPos();
+            System.out.println("threads=" + threads + " iterations=" + apns.getIterations()
+                    + " solvedLeaves=" + apns.getSolvedLeaves());
+            Assert.assertTrue(apns.getIterations() > 0);
+        }
+    }
+
+    // 展开后没有子节点的叶子：串行 pns 和并行 pns 一样当成证明不了，不会选不出 most-proving 节点
+    @Test
+    public void testChildlessLeafIsDisproven() {
+        ProofNumberSearch noMoves = new ProofNumberSearch() {
+            @Override
+            protected void generateChildren(Node n, IChessboardAIAlgo chessboardAIAlgo) {
+            }
+
+            @Override
+            protected boolean resourcesAvailable(long startTimeInMs, int count) {
+                return count < 10;
+            }
+
+            @Override
+            protected void evaluate(Node root, IChessboardAIAlgo chessboardAIAlgo) {
+            }
+        };
+        Node root = new Node(null, -1, -1, Player.WHITE.getId(), 0);
+        noMoves.pns(root, new ChessboardByteArrayAlgo(15));
+        Assert.assertEquals(Node.Status.DISPROVEN, root.getValue());
+        Assert.assertEquals(1, noMoves.getIterations());
+    }
+}
@@ -0,0 +1,74 @@
+package chessboardalgo;
+
+import aialgo.vcx.VCX;
+import common.Position;
+import org.junit.Assert;
+import org.junit.Test;
+import player.Player;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static vcx.VCXTest.debugInit;
+
+public class ChessboardBitboardAlgoTest {
+    private static final int size = 15;
+
+    private void assertSameBoard(IChessboardAIAlgo expected, IChessboardAIAlgo actual) {
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                Assert.assertEquals(expected.getValInBoard(x, y), actual.getValInBoard(x, y));
+                if (expected.getValInBoard(x, y) != 0) {
+                    Assert.assertEquals(expected.isTerminal(x, y), actual.isTerminal(x, y));
+                }
+                for (int dist = 1; dist <= 2; dist++) {
+                    for (int cnt = 1; cnt <= 3; cnt++) {
+                        Assert.assertEquals(expected.hasNeighbor(x, y, dist, cnt), actual.hasNeighbor(x, y, dist, cnt));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRandomBoardsMatchByteArray() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            IChessboardAIAlgo expected = new ChessboardByteArrayAlgo(size);
+            IChessboardAIAlgo actual = new ChessboardBitboardAlgo(size);
+            int moves = random.nextInt(120);
+            for (int i = 0; i < moves; i++) {
+                int x = random.nextInt(size), y = random.nextInt(size), color = random.nextInt(3);
+                expected.setPiece(x, y, color);
+                actual.setPiece(x, y, color);
+            }
+            assertSameBoard(expected, actual);
+            assertSameBoard(expected, actual.clone());
+        }
+    }
+
+    @Test
+    public void testConsistentBoardMatchByteArray() {
+        String input = "H8 J7 G7 I8 I9 Ja G9 G6 H7 J8 J9 H9 Ga I6 ";
+        IChessboardAlgo expected = new ChessboardByteArrayAlgoConsistent(size);
+        IChessboardAlgo actual = new ChessboardBitboardAlgoConsistent(size);
+        debugInit(expected, input);
+        debugInit(actual, input);
+        assertSameBoard(expected, actual);
+        Assert.assertEquals(expected.generateStepsCode(), actual.generateStepsCode());
+        Assert.assertEquals(new ArrayList<>(expected.getAllSteps()), new ArrayList<>(actual.clone().getAllSteps()));
+    }
+
+    @Test
+    public void testVCXOnBitboard() {
+        String input = "H8 I8 I9 G7 J9 K9 Ha J8 Hb H9 Ia K8 Ga Ja Ea Fa Ib L8 M8 M7 N6 F9";
+        IChessboardAlgo expected = new ChessboardByteArrayAlgo(size);
+        IChessboardAlgo actual = new ChessboardBitboardAlgo(size);
+        debugInit(expected, input);
+        debugInit(actual, input);
+        Position expectedPos = new VCX(expected, Player.WHITE.getId(), 7).aiFindPos();
+        Position actualPos = new VCX(actual, Player.WHITE.getId(), 7).aiFindPos();
+        Assert.assertNotEquals(Position.EMPTY, actualPos);
+        Assert.assertEquals(expectedPos, actualPos);
+    }
+}
@@ -0,0 +1,57 @@
+package common;
+
+import aialgo.vcx.VCX;
+import aialgo.vcx.VCXResultCache;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAlgo;
+import org.junit.Assert;
+import org.junit.Test;
+import player.Player;
+
+import static vcx.VCXTest.debugInit;
+
+public class SearchBudgetTest {
+
+    @Test
+    public void testChildNeverOutlivesParent() {
+        SearchBudget parent = SearchBudget.of(1_000, SearchBudget.NO_LIMIT);
+        SearchBudget child = parent.child(60_000);
+        Assert.assertTrue(child.remainingMillis() <= 1_000);
+        Assert.assertEquals(SearchBudget.NO_LIMIT, SearchBudget.unlimited().child(SearchBudget.NO_LIMIT).remainingMillis());
+    }
+
+    @Test
+    public void testNodesAndCancelPropagate() {
+        SearchBudget parent = SearchBudget.of(SearchBudget.NO_LIMIT, 100);
+        SearchBudget child = parent.child(SearchBudget.NO_LIMIT, SearchBudget.NO_LIMIT);
+        Assert.assertFalse(child.consume(99));
+        Assert.assertEquals(99, parent.getNodes());
+        Assert.assertTrue(child.consume(1));
+
+        parent = SearchBudget.unlimited();
+        child = parent.child(SearchBudget.NO_LIMIT);
+        Assert.assertFalse(child.isExhausted());
+        parent.cancel();
+        Assert.assertTrue(child.isCancelled());
+        Assert.assertTrue(child.isExhausted());
+    }
+
+    @Test
+    public void testVCXStopsWithParent() {
+        boolean cacheEnabled = VCXResultCache.enabled;
+        VCXResultCache.enabled = false;
+        try {
+            IChessboardAlgo board = new ChessboardByteArrayAlgo(15);
+            debugInit(board, "H8 I8 I9 Ja G7 H9 H7 Ga J7 I7 I6 Ec Fb Ia Ha G8 Jb H6 J8 K7 F7 E7 ");
+            SearchBudget parent = SearchBudget.unlimited();
+            parent.cancel();
+            VCX vcx = new VCX(board, Player.WHITE.getId(), 27);
+            vcx.setParentBudget(parent);
+            long start = System.currentTimeMillis();
+            Assert.assertEquals(Position.EMPTY, vcx.aiFindPos());
+            Assert.assertTrue(System.currentTimeMillis() - start < 1_000);
+        } finally {
+            VCXResultCache.enabled = cacheEnabled;
+        }
+    }
+}
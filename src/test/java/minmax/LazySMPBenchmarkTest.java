@@ -0,0 +1,36 @@
+package minmax;
+
+import aialgo.LazySMPMinMaxAIAlgo;
+import aialgo.vcx.NegamaxVCXEnhancedContext;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAlgo;
+import common.Position;
+import org.junit.Assert;
+import org.junit.Test;
+import player.Player;
+
+import static vcx.VCXTest.debugInit;
+
+// 固定时间预算下，线程数 1 -> 16 的每秒节点数
+public class LazySMPBenchmarkTest {
+
+    @Test
+    public void testNodesPerSecondScaling() throws InterruptedException {
+        long timeLimitMs = 1000;
+        for (int threads : new int[]{1, 2, 4, 8, 16}) {
+            IChessboardAlgo board = new ChessboardByteArrayAlgo(15);
+            debugInit(board, "H8 I8 I9 G7 J9 K9 Ha H9 Ga J8 Ia");
+            LazySMPMinMaxAIAlgo ai = new LazySMPMinMaxAIAlgo(board, Player.BLACK.getId(), 15,
+                    NegamaxVCXEnhancedContext.DISABLE, threads);
+            ai.setTimeLimitMs(timeLimitMs);
+            long start = System.currentTimeMillis();
+            Position pos = ai.aiFindPos();
+            long cost = System.currentTimeMillis() - start;
+            Assert.assertTrue(ai.awaitHelpers(10_000));
+            Assert.assertNotEquals(Position.EMPTY, pos);
+            Assert.assertEquals(0, board.getValInBoard(pos.x, pos.y));
+            System.out.printf("threads:%d nodes:%d main nodes:%d cost:%dms nps:%d%n", threads, ai.getTotalNodeCount(),
+                    ai.getNodeCount(), cost, ai.getTotalNodeCount() * 1000 / Math.max(1, cost));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package minmax;
+
+import aialgo.MinMaxAIAlgo;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAlgo;
+import common.Position;
+import org.junit.Assert;
+import org.junit.Test;
+import player.Player;
+
+import static vcx.VCXTest.debugInit;
+
+public class MinMaxAIAlgoTest {
+    private static final int size = 15;
+
+    private IChessboardAlgo init(String input) {
+        IChessboardAlgo board = new ChessboardByteArrayAlgo(size);
+        debugInit(board, input);
+        return board;
+    }
+
+    @Test
+    public void testDeadlineReturnsMoveInTime() {
+        IChessboardAlgo board = init("H8 I8 I9 G7 J9 K9 Ha H9 Ga J8 Ia");
+        MinMaxAIAlgo ai = new MinMaxAIAlgo(board, Player.BLACK.getId(), 15);
+        ai.setTimeLimitMs(500);
+        long start = System.currentTimeMillis();
+        Position pos = ai.aiFindPos();
+        long cost = System.currentTimeMillis() - start;
+        Assert.assertNotEquals(Position.EMPTY, pos);
+        Assert.assertEquals(0, board.getValInBoard(pos.x, pos.y));
+        // 超时后只需要回溯到根节点
+        Assert.assertTrue("cost " + cost, cost < 5_000);
+    }
+
+    @Test
+    public void testIterativeDeepeningFindsWin() {
+        // 黑方 H8 I8 J8 K8 已经活四
+        IChessboardAlgo board = init("H8 A1 I8 A3 J8 A5 K8 A7");
+        MinMaxAIAlgo ai = new MinMaxAIAlgo(board, Player.WHITE.getId(), 7);
+        ai.setIterativeDeepening(true);
+        Position pos = ai.aiFindPos();
+        Assert.assertTrue(pos.winning);
+        Assert.assertEquals(board.getValInBoard(7, pos.y), Player.BLACK.getId());
+        Assert.assertTrue(pos.x == 6 || pos.x == 11);
+    }
+}
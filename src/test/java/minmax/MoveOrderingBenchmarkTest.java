@@ -0,0 +1,42 @@
+package minmax;
+
+import aialgo.MinMaxAIAlgo;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAlgo;
+import org.junit.Assert;
+import org.junit.Test;
+import player.Player;
+
+import static vcx.VCXTest.debugInit;
+
+// SmartAITest 里的开局，比较有无杀手着法/历史表时的节点数
+public class MoveOrderingBenchmarkTest {
+    public static final String[] OPENINGS = {
+            "H8 I7 I9", "H8 G9 G7", "H8 I8 I9", "H8 J8 F8", "H8 J7 G7",
+            "H8 J6 I9", "H8 K8 G9", "H8 K7 G9", "H8 K6 G9", "H8 K5 G9"
+    };
+
+    public static MinMaxAIAlgo build(String opening, int depth) {
+        IChessboardAlgo board = new ChessboardByteArrayAlgo(15);
+        debugInit(board, opening);
+        return new MinMaxAIAlgo(board, Player.BLACK.getId(), depth);
+    }
+
+    @Test
+    public void testKillerAndHistoryReduceNodes() {
+        int depth = 5;
+        long plainTotal = 0, orderedTotal = 0;
+        for (String opening : OPENINGS) {
+            MinMaxAIAlgo plain = build(opening, depth);
+            plain.setMoveOrdering(false);
+            plain.aiFindPos();
+            MinMaxAIAlgo ordered = build(opening, depth);
+            ordered.aiFindPos();
+            System.out.printf("%s plain:%d ordered:%d%n", opening, plain.getNodeCount(), ordered.getNodeCount());
+            plainTotal += plain.getNodeCount();
+            orderedTotal += ordered.getNodeCount();
+        }
+        System.out.printf("total plain:%d ordered:%d (%.1f%%)%n", plainTotal, orderedTotal, 100.0 * orderedTotal / plainTotal);
+        Assert.assertTrue(orderedTotal < plainTotal);
+    }
+}
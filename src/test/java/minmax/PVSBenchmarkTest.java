@@ -0,0 +1,35 @@
+package minmax;
+
+import aialgo.MinMaxAIAlgo;
+import common.Position;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static minmax.MoveOrderingBenchmarkTest.OPENINGS;
+import static minmax.MoveOrderingBenchmarkTest.build;
+
+// SmartAITest 里的开局，A/B 比较普通 alpha-beta 和 PVS 的节点数与选点
+public class PVSBenchmarkTest {
+
+    @Test
+    public void testPVSReduceNodes() {
+        int depth = 7;
+        long plainTotal = 0, pvsTotal = 0;
+        int agree = 0;
+        for (String opening : OPENINGS) {
+            MinMaxAIAlgo plain = build(opening, depth);
+            Position expected = plain.aiFindPos();
+            MinMaxAIAlgo pvs = build(opening, depth);
+            pvs.setPrincipalVariationSearch(true);
+            Position actual = pvs.aiFindPos();
+            if (expected.equals(actual)) agree++;
+            System.out.printf("%s alpha-beta:%d %s pvs:%d %s%n", opening,
+                    plain.getNodeCount(), expected, pvs.getNodeCount(), actual);
+            plainTotal += plain.getNodeCount();
+            pvsTotal += pvs.getNodeCount();
+        }
+        System.out.printf("total alpha-beta:%d pvs:%d (%.1f%%), same move %d/%d%n",
+                plainTotal, pvsTotal, 100.0 * pvsTotal / plainTotal, agree, OPENINGS.length);
+        Assert.assertTrue(pvsTotal < plainTotal);
+    }
+}
@@ -0,0 +1,65 @@
+package minmax;
+
+import aialgo.MinMaxAIAlgo;
+import aialgo.RootSplitMinMaxAIAlgo;
+import aialgo.vcx.NegamaxVCXEnhancedContext;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAlgo;
+import common.Position;
+import org.junit.Assert;
+import org.junit.Test;
+import player.Player;
+
+import static minmax.MoveOrderingBenchmarkTest.OPENINGS;
+import static minmax.MoveOrderingBenchmarkTest.build;
+import static vcx.VCXTest.debugInit;
+
+// 串行 negamax 和根节点并行的耗时、节点数与选点比较
+public class RootSplitBenchmarkTest {
+
+    private RootSplitMinMaxAIAlgo buildSplit(String opening, int depth, int threads) {
+        IChessboardAlgo board = new ChessboardByteArrayAlgo(15);
+        debugInit(board, opening);
+        return new RootSplitMinMaxAIAlgo(board, Player.BLACK.getId(), depth, NegamaxVCXEnhancedContext.DISABLE, threads);
+    }
+
+    @Test
+    public void testRootSplit() {
+        int depth = 5, threads = 4;
+        long serialCost = 0, splitCost = 0;
+        int agree = 0;
+        for (String opening : OPENINGS) {
+            MinMaxAIAlgo serial = build(opening, depth);
+            long start = System.currentTimeMillis();
+            Position expected = serial.aiFindPos();
+            serialCost += System.currentTimeMillis() - start;
+
+            RootSplitMinMaxAIAlgo split = buildSplit(opening, depth, threads);
+            start = System.currentTimeMillis();
+            Position actual = split.aiFindPos();
+            splitCost += System.currentTimeMillis() - start;
+
+            Assert.assertNotEquals(Position.EMPTY, actual);
+            Assert.assertEquals(0, split.getChessboardAlgo().getValInBoard(actual.x, actual.y));
+            Assert.assertEquals(expected.winning, actual.winning);
+            // 并列最优时先报告的候选点胜出，选点可能和串行不同
+            if (expected.equals(actual)) agree++;
+            System.out.printf("%s serial:%d %s split:%d %s%n", opening,
+                    serial.getNodeCount(), expected, split.getTotalNodeCount(), actual);
+        }
+        System.out.printf("serial:%dms split(%d threads):%dms, same move %d/%d%n",
+                serialCost, threads, splitCost, agree, OPENINGS.length);
+    }
+
+    @Test
+    public void testRootSplitFindsWin() {
+        // 黑方 H8 I8 J8 K8 已经活四
+        IChessboardAlgo board = new ChessboardByteArrayAlgo(15);
+        debugInit(board, "H8 A1 I8 A3 J8 A5 K8 A7");
+        RootSplitMinMaxAIAlgo ai = new RootSplitMinMaxAIAlgo(board, Player.WHITE.getId(), 5,
+                NegamaxVCXEnhancedContext.DISABLE, 4);
+        Position pos = ai.aiFindPos();
+        Assert.assertTrue(pos.winning);
+        Assert.assertTrue(pos.x == 6 || pos.x == 11);
+    }
+}
@@ -0,0 +1,100 @@
+package player;
+
+import UI.Piece;
+import aialgo.MinMaxAIAlgo;
+import aialgo.vcx.NegamaxVCXEnhancedContext;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAlgo;
+import common.Position;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static vcx.VCXTest.debugInit;
+
+public class AIPlayStrategyTest {
+
+    private void play(IChessboardAlgo board, AIPlayStrategy strategy, Piece piece, boolean isAI) {
+        board.setPiece(piece);
+        strategy.setPieceCallback(piece, isAI);
+    }
+
+    @Test
+    public void testPonderHitReusesBackgroundSearch() {
+        IChessboardAlgo board = new ChessboardByteArrayAlgo(15);
+        debugInit(board, "H8 I7 I9 G9");
+        AtomicInteger mainSearches = new AtomicInteger();
+        MinMaxAIAlgo main = new MinMaxAIAlgo(board, Player.WHITE.getId(), 3) {
+            @Override
+            public Position aiFindPos() {
+                mainSearches.incrementAndGet();
+                return super.aiFindPos();
+            }
+        };
+        AIPlayStrategy strategy = new AIPlayStrategy(main, null, (b, searcher) -> new MinMaxAIAlgo(b, Player.WHITE.getId(), 3));
+        strategy.setPonderWidth(3);
+        Position aiPos = strategy.decidePiecePos();
+        play(board, strategy, new Piece(aiPos.x, aiPos.y, Player.BLACK), true);
+        // 后台思考的结果和对手落子后现场搜索的一致
+        Position predicted = predictedReply(board);
+        IChessboardAlgo expectedBoard = (IChessboardAlgo) board.clone();
+        expectedBoard.setPiece(new Piece(predicted.x, predicted.y, Player.WHITE));
+        Position expected = new MinMaxAIAlgo(expectedBoard, Player.WHITE.getId(), 3).aiFindPos();
+
+        play(board, strategy, new Piece(predicted.x, predicted.y, Player.WHITE), false);
+        Position actual = strategy.decidePiecePos();
+        // 猜中时不再调用原来的 AI
+        Assert.assertEquals(1, mainSearches.get());
+        Assert.assertEquals(expected, actual);
+        strategy.stop();
+    }
+
+    @Test
+    public void testPonderMissSearchesAgain() {
+        IChessboardAlgo board = new ChessboardByteArrayAlgo(15);
+        debugInit(board, "H8 I7 I9 G9");
+        AIPlayStrategy strategy = new AIPlayStrategy(new MinMaxAIAlgo(board, Player.WHITE.getId(), 3), null,
+                (b, searcher) -> new MinMaxAIAlgo(b, Player.WHITE.getId(), 3));
+        Position aiPos = strategy.decidePiecePos();
+        play(board, strategy, new Piece(aiPos.x, aiPos.y, Player.BLACK), true);
+        play(board, strategy, new Piece(0, 0, Player.WHITE), false);
+        Position actual = strategy.decidePiecePos();
+        Assert.assertNotEquals(Position.EMPTY, actual);
+        Assert.assertEquals(0, board.getValInBoard(actual.x, actual.y));
+        strategy.stop();
+    }
+
+    @Test
+    public void testPonderSeedsFromPrincipalVariation() {
+        IChessboardAlgo board = new ChessboardByteArrayAlgo(15);
+        debugInit(board, "H8 I7 I9 G9");
+        MinMaxAIAlgo main = new MinMaxAIAlgo(board, Player.WHITE.getId(), 3);
+        AIPlayStrategy strategy = new AIPlayStrategy(main, null, (b, searcher) -> {
+            Assert.assertSame(main, searcher);
+            return new MinMaxAIAlgo(b, Player.WHITE.getId(), 3, NegamaxVCXEnhancedContext.DISABLE, searcher);
+        });
+        Position aiPos = strategy.decidePiecePos();
+        play(board, strategy, new Piece(aiPos.x, aiPos.y, Player.BLACK), true);
+        int pv = main.pvMove();
+        Assert.assertNotEquals(-1, pv);
+        Assert.assertTrue(strategy.ponderedMoves().contains(pv));
+
+        // 猜中后换上来的 AI 跟着对局继续落子
+        play(board, strategy, new Piece(pv % 15, pv / 15, Player.WHITE), false);
+        Position next = strategy.decidePiecePos();
+        Assert.assertEquals(0, board.getValInBoard(next.x, next.y));
+        play(board, strategy, new Piece(next.x, next.y, Player.BLACK), true);
+        play(board, strategy, new Piece(0, 0, Player.WHITE), false);
+        Position third = strategy.decidePiecePos();
+        Assert.assertEquals(0, board.getValInBoard(third.x, third.y));
+        strategy.stop();
+    }
+
+    private Position predictedReply(IChessboardAlgo board) {
+        MinMaxAIAlgo probe = new MinMaxAIAlgo(board.clone(), Player.WHITE.getId(), 1);
+        int[] buffer = new int[15 * 15];
+        Assert.assertTrue(probe.getScoreManager().generateCandidatePiece(Player.WHITE.getId(), false, 1, 1, buffer) > 0);
+        return new Position(buffer[0] / 15, buffer[0] % 15);
+    }
+}
@@ -0,0 +1,103 @@
+package scorecalculator;
+
+import chessboardalgo.ChessboardBitboardAlgo;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAIAlgo;
+import org.junit.Assert;
+import org.junit.Test;
+import player.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CachedScoreManagerTest {
+    private static final int size = 15;
+
+    private void assertSameScore(CachedScoreManager expected, CachedScoreManager actual) {
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                for (int role = 1; role <= 2; role++) {
+                    Assert.assertEquals(expected.getScore(y, x, role), actual.getScore(y, x, role));
+                }
+            }
+        }
+        Assert.assertEquals(expected.evaluation(true, Player.WHITE.getId()), actual.evaluation(true, Player.WHITE.getId()));
+        for (int role = 1; role <= 2; role++) {
+            Assert.assertEquals(expected.generateCandidatePiece(role), actual.generateCandidatePiece(role));
+        }
+    }
+
+    private void runRandomGame(IChessboardAIAlgo board, Random random) {
+        CachedScoreManager expected = new CachedScoreManager(board, PointEvaluator::new);
+        expected.setIncrementalUpdate(false);
+        CachedScoreManager actual = new CachedScoreManager(board);
+        actual.setIncrementalUpdate(true);
+        List<Integer> placed = new ArrayList<>();
+        int moves = 20 + random.nextInt(120);
+        for (int i = 0; i < moves; i++) {
+            int y, x;
+            if (!placed.isEmpty() && random.nextInt(4) == 0) {
+                int idx = placed.remove(random.nextInt(placed.size()));
+                y = idx / size;
+                x = idx % size;
+                board.setPiece(x, y, 0);
+            } else {
+                y = random.nextInt(size);
+                x = random.nextInt(size);
+                if (board.getValInBoard(x, y) != 0) continue;
+                board.setPiece(x, y, 1 + random.nextInt(2));
+                placed.add(y * size + x);
+            }
+            expected.updateScore(y, x);
+            actual.updateScore(y, x);
+            assertSameScore(expected, actual);
+        }
+    }
+
+    @Test
+    public void testIncrementalMatchesFullUpdate() {
+        Random random = new Random(3);
+        for (int round = 0; round < 100; round++) {
+            runRandomGame(new ChessboardByteArrayAlgo(size), random);
+            runRandomGame(new ChessboardBitboardAlgo(size), random);
+        }
+    }
+
+    @Test
+    public void testRunningTotalMatchesFullEvaluation() {
+        Random random = new Random(9);
+        CachedScoreManager.checkRunningTotal = true;
+        try {
+            for (int round = 0; round < 50; round++) {
+                runRandomGame(new ChessboardBitboardAlgo(size), random);
+            }
+        } finally {
+            CachedScoreManager.checkRunningTotal = false;
+        }
+    }
+
+    @Test
+    public void testDirtyCellsCoverChangedScores() {
+        Random random = new Random(5);
+        IChessboardAIAlgo board = new ChessboardBitboardAlgo(size);
+        CachedScoreManager manager = new CachedScoreManager(board);
+        for (int i = 0; i < 100; i++) {
+            int y = random.nextInt(size), x = random.nextInt(size);
+            int[][] before = new int[3][size * size];
+            for (int idx = 0; idx < size * size; idx++) {
+                before[1][idx] = manager.getScore(idx / size, idx % size, 1);
+                before[2][idx] = manager.getScore(idx / size, idx % size, 2);
+            }
+            board.setPiece(x, y, board.getValInBoard(x, y) == 0 ? 1 + random.nextInt(2) : 0);
+            manager.updateScore(y, x);
+            boolean[] dirty = new boolean[size * size];
+            for (int k = 0; k < manager.getDirtyCount(); k++) dirty[manager.getDirtyCell(k)] = true;
+            for (int idx = 0; idx < size * size; idx++) {
+                if (dirty[idx]) continue;
+                Assert.assertEquals(before[1][idx], manager.getScore(idx / size, idx % size, 1));
+                Assert.assertEquals(before[2][idx], manager.getScore(idx / size, idx % size, 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package scorecalculator;
+
+import chessboardalgo.ChessboardBitboardAlgo;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAIAlgo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PatternPointEvaluatorTest {
+    private static final int size = 15;
+
+    // 一行 15 格，目标点之外的 14 格随机抽样填法，逐一比较三种实现
+    @Test
+    public void testSampledRow() {
+        Random random = new Random(7);
+        for (int col = 0; col < size; col++) {
+            IChessboardAIAlgo byteBoard = new ChessboardByteArrayAlgo(size);
+            IChessboardAIAlgo bitBoard = new ChessboardBitboardAlgo(size);
+            PointEvaluator expected = new PointEvaluator(size, byteBoard, new int[3][4][size][size]);
+            PointEvaluator byScan = new PatternPointEvaluator(size, byteBoard, new int[3][4][size][size]);
+            PointEvaluator byBit = new PatternPointEvaluator(size, bitBoard, new int[3][4][size][size]);
+            for (int sample = 0; sample < 5_000; sample++) {
+                for (int i = 0; i < size; i++) {
+                    int val = i == col ? 0 : random.nextInt(3);
+                    byteBoard.setPiece(i, 0, val);
+                    bitBoard.setPiece(i, 0, val);
+                }
+                int score = expected.scorePoint(0, col, 1, Direction.HORIZONTAL);
+                Assert.assertEquals(score, byScan.scorePoint(0, col, 1, Direction.HORIZONTAL));
+                Assert.assertEquals(score, byBit.scorePoint(0, col, 1, Direction.HORIZONTAL));
+            }
+        }
+    }
+
+    @Test
+    public void testRandomBoardsAllDirections() {
+        Random random = new Random(11);
+        for (int round = 0; round < 300; round++) {
+            IChessboardAIAlgo byteBoard = new ChessboardByteArrayAlgo(size);
+            IChessboardAIAlgo bitBoard = new ChessboardBitboardAlgo(size);
+            int moves = random.nextInt(150);
+            for (int i = 0; i < moves; i++) {
+                int x = random.nextInt(size), y = random.nextInt(size), color = 1 + random.nextInt(2);
+                byteBoard.setPiece(x, y, color);
+                bitBoard.setPiece(x, y, color);
+            }
+            int[][][][] expectedCache = new int[3][4][size][size];
+            int[][][][] scanCache = new int[3][4][size][size];
+            int[][][][] bitCache = new int[3][4][size][size];
+            PointEvaluator expected = new PointEvaluator(size, byteBoard, expectedCache);
+            PointEvaluator byScan = new PatternPointEvaluator(size, byteBoard, scanCache);
+            PointEvaluator byBit = new PatternPointEvaluator(size, bitBoard, bitCache);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    for (int role = 1; role <= 2; role++) {
+                        int score = expected.scorePoint(y, x, role);
+                        Assert.assertEquals(score, byScan.scorePoint(y, x, role));
+                        Assert.assertEquals(score, byBit.scorePoint(y, x, role));
+                    }
+                }
+            }
+            Assert.assertArrayEquals(expectedCache, scanCache);
+            Assert.assertArrayEquals(expectedCache, bitCache);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package vcx;
+
+import aialgo.vcx.ParallelVCX;
+import aialgo.vcx.VCX;
+import aialgo.vcx.VCXResultCache;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAlgo;
+import common.Position;
+import org.junit.Assert;
+import org.junit.Test;
+import player.Player;
+
+import static vcx.VCXTest.debugInit;
+
+// 串行 VCX 和根节点并行 VCX 的结论与耗时比较
+public class ParallelVCXTest {
+    private static final String[] POSITIONS = {
+            "H8 I8 I9 Ja G7 H9 H7 Ga J7 I7 I6 Ec Fb Ia Ha G8 Jb H6 J8 K7 F7 E7 ",
+            "H8 I8 I9 G7 J9 K9 Ha J8 Hb H9 Ia K8 Ga Ja Ea Fa Ib L8 M8 M7 N6 F9",
+    };
+    private static final int[] DEPTHS = {27, 7};
+
+    private static IChessboardAlgo build(String input) {
+        IChessboardAlgo chessboard = new ChessboardByteArrayAlgo(15);
+        debugInit(chessboard, input);
+        return chessboard;
+    }
+
+    private static int humanColor(String input) {
+        return input.trim().split(" ").length % 2 == 1 ? Player.BLACK.getId() : Player.WHITE.getId();
+    }
+
+    @Test
+    public void testParallelFindsSameWins() {
+        boolean cacheEnabled = VCXResultCache.enabled;
+        VCXResultCache.enabled = false;
+        try {
+            int threads = 4;
+            for (int i = 0; i < POSITIONS.length; i++) {
+                String input = POSITIONS[i];
+                long start = System.currentTimeMillis();
+                Position expected = new VCX(build(input), humanColor(input), DEPTHS[i]).aiFindPos();
+                long serialCost = System.currentTimeMillis() - start;
+
+                IChessboardAlgo board = build(input);
+                start = System.currentTimeMillis();
+                Position actual = new ParallelVCX(board, humanColor(input), DEPTHS[i], threads).aiFindPos();
+                long parallelCost = System.currentTimeMillis() - start;
+
+                Assert.assertNotEquals(Position.EMPTY, expected);
+                Assert.assertNotEquals(Position.EMPTY, actual);
+                Assert.assertTrue(actual.winning);
+                Assert.assertEquals(0, board.getValInBoard(actual.x, actual.y));
+                // 多个候选点都能赢时先证明出来的胜出，选点可能和串行不同
+                System.out.printf("%s depth:%d serial:%s %dms parallel(%d threads):%s %dms%n", input, DEPTHS[i],
+                        expected, serialCost, threads, actual, parallelCost);
+            }
+        } finally {
+            VCXResultCache.enabled = cacheEnabled;
+        }
+    }
+
+    @Test
+    public void testSingleThreadFallsBackToSerial() {
+        IChessboardAlgo board = build("H8 A1 I8 A3 J8 A5");
+        Position pos = new ParallelVCX(board, Player.WHITE.getId(), 5, 1).aiFindPos();
+        Assert.assertTrue(pos.winning);
+        Assert.assertEquals(7, pos.y);
+    }
+}
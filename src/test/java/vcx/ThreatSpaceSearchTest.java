@@ -0,0 +1,115 @@
+package vcx;
+
+import aialgo.IWinningAlgo;
+import aialgo.vcx.ThreatSpaceSearch;
+import aialgo.vcx.VCX;
+import aialgo.vcx.VCXResultCache;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAlgo;
+import common.Position;
+import org.junit.Assert;
+import org.junit.Test;
+import player.Player;
+
+import static vcx.VCXTest.debugInit;
+
+public class ThreatSpaceSearchTest {
+    // VCXTest 和 AlmostVCXWinTest 里的局面，最后一个 VCX 27 步内找不到杀
+    private static final String[] POSITIONS = {
+            "H8 I8 I9 Ja G7 H9 H7 Ga J7 I7 I6 Ec Fb Ia Ha G8 Jb H6 J8 K7 F7 E7 ",
+            "H8 I8 I9 Ja G7 H9 H7 F6 H6 F8 G8 F7 ",
+            "H8 I8 I9 G7 J9 K9 Ha J8 Hb H9 Ia K8 Ga Ja Ea Fa Ib L8 M8 M7 N6 F9",
+            "H8 I8 I9 G7 J9 K9 Ha H9 Ga J8 Ia Ja Hb K8 Fa Ea Gc Fd L8",
+            "H8 J7 G7 I8 I9 Ja G9 G6 H7 J8 J9 H9 Ga I6 ",
+            "H8 K8 F8 I8 E9 I6 G7 H6 I9 F6 G6 G8 H9 G9 H7 Hb ",
+            "H8 K8 F8 I8 E9 I6 G7 H6 I9 F6 G6 G8 H9 G9 H7 Hb F7 E7 ",
+            "H8 I8 I9 Ja G7 H9 H7 J7 Ga J8 J9 K6 L5 I7 ",
+    };
+    private static final int[] DEPTHS = {27, 25, 7, 13, 27, 27, 27, 27};
+
+    private static IChessboardAlgo build(String input) {
+        IChessboardAlgo chessboard = new ChessboardByteArrayAlgo(15);
+        debugInit(chessboard, input);
+        return chessboard;
+    }
+
+    private static int humanColor(String input) {
+        return input.trim().split(" ").length % 2 == 1 ? Player.BLACK.getId() : Player.WHITE.getId();
+    }
+
+    private static Position find(IWinningAlgo algo) {
+        Position pos = algo.aiFindPos();
+        if (pos != Position.EMPTY) {
+            Assert.assertTrue(pos.winning);
+            Assert.assertEquals(0, algo.getChessboardAlgo().getValInBoard(pos.x, pos.y));
+        }
+        return pos;
+    }
+
+    @Test
+    public void testFindsWin() {
+        String input = POSITIONS[2];
+        Position pos = find(new ThreatSpaceSearch(build(input), humanColor(input), 7));
+        Assert.assertNotEquals(Position.EMPTY, pos);
+    }
+
+    @Test
+    public void testImmediateWins() {
+        // 黑方活三，三步内能赢
+        IChessboardAlgo board = build("H8 A1 I8 A3 J8 A5");
+        Assert.assertNotEquals(Position.EMPTY, find(new ThreatSpaceSearch(board, Player.WHITE.getId(), 3)));
+        // 白方冲四，黑方只能挡，挡完没有威胁
+        board = build("H8 D4 I8 E4 C4 F4 B1 G4");
+        Assert.assertEquals(Position.EMPTY, find(new ThreatSpaceSearch(board, Player.WHITE.getId(), 9)));
+    }
+
+    @Test
+    public void testNoWinAgainstCounterFour() {
+        // 黑方 I8 是双活三，放宽模型里直接算赢；但白方 J8 反冲四的同时挡住了横向的活三
+        IChessboardAlgo board = build("G8 J5 H8 J6 Ia J7 Ib A1 J4 A3");
+        Assert.assertEquals(Position.EMPTY, find(new ThreatSpaceSearch(board, Player.WHITE.getId(), 3)));
+    }
+
+    @Test
+    public void testCallbackFollowsBoard() {
+        IChessboardAlgo board = build("H8 A1 I8 A3");
+        ThreatSpaceSearch tss = new ThreatSpaceSearch(board, Player.WHITE.getId(), 3);
+        Assert.assertEquals(Position.EMPTY, tss.aiFindPos());
+        board.setPiece(9, 7, Player.BLACK.getId());
+        tss.setPieceCallBack(7, 9, Player.BLACK.getId(), true);
+        board.setPiece(5, 0, Player.WHITE.getId());
+        tss.setPieceCallBack(0, 5, Player.WHITE.getId(), false);
+        Assert.assertNotEquals(Position.EMPTY, tss.aiFindPos());
+    }
+
+    // 同样的深度下两种算杀的成功数和耗时
+    @Test
+    public void testCompareWithVCX() {
+        boolean cacheEnabled = VCXResultCache.enabled;
+        VCXResultCache.enabled = false;
+        try {
+            long vcxCost = 0, tssCost = 0;
+            int vcxFound = 0, tssFound = 0;
+            for (int i = 0; i < POSITIONS.length; i++) {
+                String input = POSITIONS[i];
+                long start = System.currentTimeMillis();
+                Position expected = find(new VCX(build(input), humanColor(input), DEPTHS[i]));
+                long vcxTime = System.currentTimeMillis() - start;
+                start = System.currentTimeMillis();
+                ThreatSpaceSearch tss = new ThreatSpaceSearch(build(input), humanColor(input), DEPTHS[i]);
+                Position actual = find(tss);
+                long tssTime = System.currentTimeMillis() - start;
+                vcxCost += vcxTime;
+                tssCost += tssTime;
+                if (expected != Position.EMPTY) vcxFound++;
+                if (actual != Position.EMPTY) tssFound++;
+                System.out.printf("%s depth:%d vcx:%s %dms tss:%s %dms nodes:%d%n", input, DEPTHS[i],
+                        expected, vcxTime, actual, tssTime, tss.getNodeCount());
+            }
+            System.out.printf("vcx found %d/%d %dms, tss found %d/%d %dms%n",
+                    vcxFound, POSITIONS.length, vcxCost, tssFound, POSITIONS.length, tssCost);
+        } finally {
+            VCXResultCache.enabled = cacheEnabled;
+        }
+    }
+}
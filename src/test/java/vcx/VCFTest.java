@@ -0,0 +1,90 @@
+package vcx;
+
+import aialgo.vcx.VCF;
+import aialgo.vcx.VCX;
+import aialgo.vcx.VCXResultCache;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAlgo;
+import common.Position;
+import org.junit.Assert;
+import org.junit.Test;
+import player.Player;
+
+import static vcx.VCXTest.debugInit;
+
+public class VCFTest {
+    private static final String[] POSITIONS = {
+            "H8 I8 I9 Ja G7 H9 H7 Ga J7 I7 I6 Ec Fb Ia Ha G8 Jb H6 J8 K7 F7 E7 ",
+            "H8 I8 I9 Ja G7 H9 H7 F6 H6 F8 G8 F7 ",
+            "H8 I8 I9 G7 J9 K9 Ha J8 Hb H9 Ia K8 Ga Ja Ea Fa Ib L8 M8 M7 N6 F9",
+            "H8 I8 I9 G7 J9 K9 Ha H9 Ga J8 Ia Ja Hb K8 Fa Ea Gc Fd L8",
+            "H8 J7 G7 I8 I9 Ja G9 G6 H7 J8 J9 H9 Ga I6 ",
+            "H8 K8 F8 I8 E9 I6 G7 H6 I9 F6 G6 G8 H9 G9 H7 Hb ",
+    };
+    private static final int[] DEPTHS = {27, 25, 7, 13, 27, 27};
+
+    private static IChessboardAlgo build(String input) {
+        IChessboardAlgo chessboard = new ChessboardByteArrayAlgo(15);
+        debugInit(chessboard, input);
+        return chessboard;
+    }
+
+    private static int humanColor(String input) {
+        return input.trim().split(" ").length % 2 == 1 ? Player.BLACK.getId() : Player.WHITE.getId();
+    }
+
+    @Test
+    public void testOpenThreeBecomesOpenFour() {
+        IChessboardAlgo board = build("H8 A1 I8 A3 J8 A5");
+        Position pos = new VCF(board, Player.WHITE.getId()).aiFindPos();
+        Assert.assertNotEquals(Position.EMPTY, pos);
+        Assert.assertTrue(pos.winning);
+        Assert.assertEquals(7, pos.y);
+        Assert.assertTrue(pos.x == 6 || pos.x == 10);
+    }
+
+    @Test
+    public void testNoWinWhenBlockIsNotFour() {
+        // 白方冲四，黑方只能挡 H4，挡完没有冲四
+        IChessboardAlgo board = build("H8 D4 I8 E4 C4 F4 B1 G4");
+        Assert.assertEquals(Position.EMPTY, new VCF(board, Player.WHITE.getId(), 27).aiFindPos());
+        // 只有两个子冲不了四
+        board = build("H8 A1 I8 A3");
+        Assert.assertEquals(Position.EMPTY, new VCF(board, Player.WHITE.getId(), 27).aiFindPos());
+    }
+
+    @Test
+    public void testCallbackFollowsBoard() {
+        IChessboardAlgo board = build("H8 A1 I8 A3");
+        VCF vcf = new VCF(board, Player.WHITE.getId());
+        Assert.assertEquals(Position.EMPTY, vcf.aiFindPos());
+        board.setPiece(9, 7, Player.BLACK.getId());
+        vcf.setPieceCallBack(7, 9, Player.BLACK.getId(), true);
+        board.setPiece(5, 0, Player.WHITE.getId());
+        vcf.setPieceCallBack(0, 5, Player.WHITE.getId(), false);
+        Assert.assertNotEquals(Position.EMPTY, vcf.aiFindPos());
+    }
+
+    // 同样的深度下 VCF 和完整 VCX 的结论和耗时
+    @Test
+    public void testCompareWithVCX() {
+        boolean cacheEnabled = VCXResultCache.enabled;
+        VCXResultCache.enabled = false;
+        try {
+            for (int i = 0; i < POSITIONS.length; i++) {
+                String input = POSITIONS[i];
+                long start = System.currentTimeMillis();
+                VCF vcf = new VCF(build(input), humanColor(input), DEPTHS[i]);
+                Position vcfPos = vcf.aiFindPos();
+                long vcfTime = System.currentTimeMillis() - start;
+                start = System.currentTimeMillis();
+                Position vcxPos = new VCX(build(input), humanColor(input), DEPTHS[i]).aiFindPos();
+                long vcxTime = System.currentTimeMillis() - start;
+                System.out.printf("%s depth:%d vcf:%s %dms nodes:%d vcx:%s %dms%n", input, DEPTHS[i],
+                        vcfPos, vcfTime, vcf.getNodeCount(), vcxPos, vcxTime);
+            }
+        } finally {
+            VCXResultCache.enabled = cacheEnabled;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package vcx;
+
+import aialgo.vcx.VCX;
+import aialgo.vcx.VCXOptimization;
+import aialgo.vcx.VCXResultCache;
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAlgo;
+import common.Position;
+import org.junit.Assert;
+import org.junit.Test;
+import player.Player;
+
+import static vcx.VCXTest.debugInit;
+
+public class VCXResultCacheTest {
+
+    @Test
+    public void testWinAndLoseSemantics() {
+        VCXResultCache cache = new VCXResultCache(1);
+        long win = VCXResultCache.key(123, Player.BLACK.getId(), VCXOptimization.FAST);
+        long lose = VCXResultCache.key(456, Player.BLACK.getId(), VCXOptimization.FAST);
+        cache.storeWin(win, 0, 112);
+        cache.storeLose(lose, 0, 13);
+        // 必胜和深度无关
+        long data = cache.probe(win, 0, 27);
+        Assert.assertTrue(VCXResultCache.isWin(data));
+        Assert.assertEquals(112, VCXResultCache.move(data));
+        // 不能胜只对不超过记录深度的查询有效
+        Assert.assertFalse(VCXResultCache.isWin(cache.probe(lose, 0, 13)));
+        Assert.assertEquals(VCXResultCache.MISS, cache.probe(lose, 0, 15));
+        // 进攻方和剪枝方式不同的是不同的 key
+        Assert.assertEquals(VCXResultCache.MISS, cache.probe(VCXResultCache.key(123, Player.WHITE.getId(), VCXOptimization.FAST), 0, 7));
+        Assert.assertEquals(VCXResultCache.MISS, cache.probe(VCXResultCache.key(123, Player.BLACK.getId(), VCXOptimization.SLOW), 0, 7));
+        // 更浅的不能胜不会覆盖更深的，必胜会
+        cache.storeLose(lose, 0, 7);
+        Assert.assertEquals(13, VCXResultCache.depth(cache.probe(lose, 0, 1)));
+        cache.storeWin(lose, 0, 5);
+        Assert.assertTrue(VCXResultCache.isWin(cache.probe(lose, 0, 99)));
+        // VCF、威胁空间搜索和 VCX 用不同的 key
+        Assert.assertEquals(VCXResultCache.MISS, cache.probe(VCXResultCache.vcfKey(123, Player.BLACK.getId()), 0, 7));
+        Assert.assertEquals(VCXResultCache.MISS, cache.probe(VCXResultCache.threatSpaceKey(123, Player.BLACK.getId()), 0, 7));
+    }
+
+    @Test
+    public void testCheckRejectsHashCollision() {
+        VCXResultCache cache = new VCXResultCache(1);
+        long key = VCXResultCache.key(123, Player.BLACK.getId(), VCXOptimization.FAST);
+        cache.storeWin(key, 17, 112);
+        // 同一个 key、校验值不同的是另一个局面，不能拿到别人的必胜结论
+        Assert.assertEquals(VCXResultCache.MISS, cache.probe(key, 18, 1));
+        // 冲突的局面写进来时覆盖原来的结论
+        cache.storeLose(key, 18, 3);
+        Assert.assertFalse(VCXResultCache.isWin(cache.probe(key, 18, 1)));
+        Assert.assertEquals(VCXResultCache.MISS, cache.probe(key, 17, 1));
+    }
+
+    @Test
+    public void testCheckIgnoresSymmetry() {
+        IChessboardAlgo board = new ChessboardByteArrayAlgo(15);
+        debugInit(board, "H8 I8 I9 G7 J9");
+        IChessboardAlgo mirrored = new ChessboardByteArrayAlgo(15);
+        for (int y = 0; y < 15; y++)
+            for (int x = 0; x < 15; x++)
+                if (board.getValInBoard(x, y) != 0)
+                    mirrored.setPiece(14 - x, y, board.getValInBoard(x, y));
+        Assert.assertEquals(VCXResultCache.check(board), VCXResultCache.check(mirrored));
+        mirrored.setPiece(0, 0, Player.WHITE.getId());
+        Assert.assertNotEquals(VCXResultCache.check(board), VCXResultCache.check(mirrored));
+    }
+
+    @Test
+    public void testClockKeepsReferencedEntries() {
+        VCXResultCache cache = new VCXResultCache(1);
+        int sets = 1024 * 1024 / 64;
+        long[] keys = new long[5];
+        for (int i = 0; i < keys.length; i++) keys[i] = 7 + (long) i * sets;
+        for (int i = 0; i < 4; i++) cache.storeLose(keys[i], 0, 9);
+        // 只有 keys[2] 没被访问过，组满时淘汰它
+        for (int i = 0; i < 4; i++) if (i != 2) cache.probe(keys[i], 0, 1);
+        cache.storeLose(keys[4], 0, 9);
+        Assert.assertEquals(VCXResultCache.MISS, cache.probe(keys[2], 0, 1));
+        for (int i : new int[]{0, 1, 3, 4}) Assert.assertNotEquals(VCXResultCache.MISS, cache.probe(keys[i], 0, 1));
+    }
+
+    @Test
+    public void testSecondInstanceReusesVerdict() {
+        String input = "H8 I8 I9 G7 J9 K9 Ha J8 Hb H9 Ia K8 Ga Ja Ea Fa Ib L8 M8 M7 N6 F9";
+        IChessboardAlgo board = new ChessboardByteArrayAlgo(15);
+        debugInit(board, input);
+        boolean enabled = VCXResultCache.enabled;
+        try {
+            VCXResultCache.enabled = false;
+            Position expected = new VCX(board.clone(), Player.WHITE.getId(), 7).aiFindPos();
+            VCXResultCache.enabled = true;
+            Position first = new VCX(board.clone(), Player.WHITE.getId(), 7).aiFindPos();
+            Position second = new VCX(board.clone(), Player.WHITE.getId(), 11).aiFindPos();
+            Assert.assertNotEquals(Position.EMPTY, expected);
+            Assert.assertEquals(expected, first);
+            Assert.assertEquals(expected, second);
+        } finally {
+            VCXResultCache.enabled = enabled;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package zobrist;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void testStoreAndProbe() {
+        TranspositionTable tt = new TranspositionTable(1);
+        Assert.assertEquals(TranspositionTable.MISS, tt.probe(0));
+        // 空棋盘的 hash 是 0
+        tt.store(0, TranspositionTable.pack(-123, 7, TranspositionTable.UPPER));
+        long data = tt.probe(0);
+        Assert.assertEquals(-123, TranspositionTable.score(data));
+        Assert.assertEquals(7, TranspositionTable.depth(data));
+        Assert.assertEquals(TranspositionTable.UPPER, TranspositionTable.bound(data));
+        Assert.assertEquals(TranspositionTable.MISS, tt.probe(1L << 40));
+    }
+
+    @Test
+    public void testDepthPreferredReplacement() {
+        TranspositionTable tt = new TranspositionTable(1);
+        int buckets = tt.capacity() / 2;
+        long deep = 5, shallow = 5 + buckets, other = 5 + 2L * buckets;
+        tt.store(deep, TranspositionTable.pack(1, 9, TranspositionTable.EXACT));
+        tt.store(shallow, TranspositionTable.pack(2, 3, TranspositionTable.EXACT));
+        Assert.assertEquals(1, TranspositionTable.score(tt.probe(deep)));
+        Assert.assertEquals(2, TranspositionTable.score(tt.probe(shallow)));
+        // 浅的只会挤掉总是替换的槽
+        tt.store(other, TranspositionTable.pack(3, 1, TranspositionTable.EXACT));
+        Assert.assertEquals(1, TranspositionTable.score(tt.probe(deep)));
+        Assert.assertEquals(TranspositionTable.MISS, tt.probe(shallow));
+        Assert.assertEquals(3, TranspositionTable.score(tt.probe(other)));
+        // 同一个 key 直接覆盖
+        tt.store(deep, TranspositionTable.pack(4, 2, TranspositionTable.LOWER));
+        Assert.assertEquals(4, TranspositionTable.score(tt.probe(deep)));
+    }
+
+    @Test
+    public void testOlderGenerationLosesDepthPriority() {
+        TranspositionTable tt = new TranspositionTable(1);
+        int buckets = tt.capacity() / 2;
+        long deep = 5, shallow = 5 + buckets, other = 5 + 2L * buckets;
+        tt.store(deep, TranspositionTable.pack(1, 9, TranspositionTable.EXACT));
+        tt.newSearch();
+        // 上一步留下的条目仍然能命中
+        Assert.assertEquals(1, TranspositionTable.score(tt.probe(deep)));
+        Assert.assertEquals(0, TranspositionTable.generation(tt.probe(deep)));
+        // 但是会被这一步的浅条目替换
+        tt.store(shallow, TranspositionTable.pack(2, 3, TranspositionTable.EXACT));
+        Assert.assertEquals(TranspositionTable.MISS, tt.probe(deep));
+        Assert.assertEquals(1, TranspositionTable.generation(tt.probe(shallow)));
+        tt.store(other, TranspositionTable.pack(3, 1, TranspositionTable.EXACT));
+        Assert.assertEquals(2, TranspositionTable.score(tt.probe(shallow)));
+        Assert.assertEquals(3, TranspositionTable.score(tt.probe(other)));
+    }
+
+    @Test
+    public void testConcurrentAccessNeverReturnsForeignEntry() throws InterruptedException {
+        TranspositionTable tt = new TranspositionTable(1);
+        int buckets = tt.capacity() / 2;
+        AtomicBoolean failed = new AtomicBoolean(false);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 2_000_000; i++) {
+                    // 同一个 bucket 上的几个 key，分数由 key 决定
+                    long key = 17 + (long) random.nextInt(8) * buckets;
+                    int expected = (int) (key * 31);
+                    if (random.nextBoolean()) {
+                        tt.store(key, TranspositionTable.pack(expected, random.nextInt(10), TranspositionTable.EXACT));
+                    } else {
+                        long data = tt.probe(key);
+                        if (data != TranspositionTable.MISS && TranspositionTable.score(data) != expected) failed.set(true);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        Assert.assertFalse(failed.get());
+    }
+}
@@ -0,0 +1,96 @@
+package zobrist;
+
+import chessboardalgo.ChessboardByteArrayAlgo;
+import chessboardalgo.IChessboardAIAlgo;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ZobristTest {
+    private static final int size = 15;
+
+    @After
+    public void tearDown() {
+        Zobrist.defaultSymmetric = false;
+    }
+
+    // 变换规则和 Zobrist 里一致：第 0 位交换 x/y，第 1 位上下翻转，第 2 位左右翻转
+    private static int transform(int t, int idx) {
+        int y = idx / size, x = idx % size;
+        int ty = (t & 1) != 0 ? x : y, tx = (t & 1) != 0 ? y : x;
+        if ((t & 2) != 0) ty = size - 1 - ty;
+        if ((t & 4) != 0) tx = size - 1 - tx;
+        return ty * size + tx;
+    }
+
+    @Test
+    public void testSymmetricPositionsShareEntry() {
+        Zobrist.defaultSymmetric = true;
+        Random random = new Random(3);
+        for (int round = 0; round < 50; round++) {
+            int[] stones = new int[size * size];
+            for (int i = 0; i < 20; i++) stones[random.nextInt(size * size)] = 1 + random.nextInt(2);
+            int bestMove = random.nextInt(size * size);
+
+            IChessboardAIAlgo origin = new ChessboardByteArrayAlgo(size);
+            Zobrist zobrist = new Zobrist(origin, new TranspositionTable(1));
+            for (int i = 0; i < stones.length; i++) {
+                if (stones[i] == 0) continue;
+                origin.setPiece(i % size, i / size, stones[i]);
+                zobrist.updateHash(i / size, i % size, stones[i]);
+            }
+            zobrist.setAndReturnScore(round, 3, TranspositionTable.EXACT, bestMove);
+
+            for (int t = 0; t < 8; t++) {
+                IChessboardAIAlgo board = new ChessboardByteArrayAlgo(size);
+                for (int i = 0; i < stones.length; i++) {
+                    int ti = transform(t, i);
+                    if (stones[i] != 0) board.setPiece(ti % size, ti / size, stones[i]);
+                }
+                Zobrist other = zobrist.fork(board);
+                Assert.assertEquals(zobrist.getHash(), other.getHash());
+                long data = other.probe();
+                Assert.assertEquals(round, TranspositionTable.score(data));
+                // 读出来的着法在各自的坐标系下
+                int move = TranspositionTable.move(data);
+                Assert.assertEquals(stones[bestMove], board.getValInBoard(move % size, move / size));
+                Assert.assertEquals(transform(t, bestMove), move);
+            }
+        }
+    }
+
+    @Test
+    public void testKeysSharedAndReproducible() {
+        IChessboardAIAlgo board = new ChessboardByteArrayAlgo(size);
+        board.setPiece(7, 7, 2);
+        board.setPiece(8, 7, 1);
+        long hash = new Zobrist(board, null).getHash();
+        Assert.assertEquals(hash, new Zobrist(board, null).getHash());
+        Assert.assertSame(Zobrist.keys(size), Zobrist.keys(size));
+        long[] keys = Zobrist.keys(size).clone();
+        try {
+            Zobrist.setKeySeed(42);
+            Assert.assertNotEquals(hash, new Zobrist(board, null).getHash());
+            Assert.assertArrayEquals(Zobrist.keys(size), Zobrist.keys(size).clone());
+        } finally {
+            Zobrist.setKeySeed(0x2545F4914F6CDD1DL);
+        }
+        Assert.assertArrayEquals(keys, Zobrist.keys(size));
+        Assert.assertEquals(hash, new Zobrist(board, null).getHash());
+    }
+
+    @Test
+    public void testDefaultModeKeepsPlainHash() {
+        IChessboardAIAlgo board = new ChessboardByteArrayAlgo(size);
+        Zobrist zobrist = new Zobrist(board, new TranspositionTable(1));
+        zobrist.updateHash(7, 7, 2);
+        zobrist.updateHash(7, 8, 1);
+        long hash = zobrist.getHash();
+        zobrist.updateHash(7, 8, 1);
+        zobrist.updateHash(7, 7, 2);
+        Assert.assertEquals(0, zobrist.getHash());
+        Assert.assertNotEquals(0, hash);
+    }
+}